@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "se.ifmo"
@@ -24,4 +25,20 @@ dependencies {
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+// Бенчмарки JMH: ./gradlew jmh (исходники в src/jmh/java)
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("CSV")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.csv"))
+}
+
+// Генератор синтетических данных:
+// ./gradlew generateSalesData --args="--output=build/generated-data --files=8 --file-size=64MB --zipf=1.1"
+tasks.register<JavaExec>("generateSalesData") {
+    group = "application"
+    description = "Generates synthetic sales CSV files"
+    mainClass.set("se.ifmo.tools.SalesDataGenerator")
+    classpath = sourceSets["main"].runtimeClasspath
+}
@@ -0,0 +1,74 @@
+package se.ifmo.benchmark;
+
+import se.ifmo.model.SalesRecord;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic sales data shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    static final String HEADER = "transaction_id,product_id,category,price,quantity";
+
+    private static final long SEED = 42L;
+
+    private BenchmarkData() {
+    }
+
+    static List<SalesRecord> records(int count, int categories) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<SalesRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new SalesRecord(
+                    i,
+                    random.nextInt(100_000),
+                    categoryName(random.nextInt(categories)),
+                    BigDecimal.valueOf(random.nextInt(1, 2_000_000), 3),
+                    random.nextInt(1, 10)
+            ));
+        }
+        return records;
+    }
+
+    static List<String> csvLines(int count, int categories) {
+        List<String> lines = new ArrayList<>(count);
+        for (SalesRecord record : records(count, categories)) {
+            lines.add(toCsvLine(record));
+        }
+        return lines;
+    }
+
+    static Path writeCsv(Path directory, int count, int categories) throws IOException {
+        Path file = directory.resolve("0.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (SalesRecord record : records(count, categories)) {
+                writer.write(toCsvLine(record));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    static String categoryName(int index) {
+        return "category-" + index;
+    }
+
+    private static String toCsvLine(SalesRecord record) {
+        return record.transactionId() + "," +
+                record.productId() + "," +
+                record.category() + "," +
+                record.price().toPlainString() + "," +
+                record.quantity();
+    }
+}
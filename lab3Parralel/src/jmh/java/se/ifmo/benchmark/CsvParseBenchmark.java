@@ -0,0 +1,73 @@
+package se.ifmo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import se.ifmo.io.SalesCsvParser;
+import se.ifmo.model.SalesRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CsvParseBenchmark {
+
+    @Param({"10000"})
+    private int recordsCount;
+
+    @Param({"20", "10000"})
+    private int categoriesCount;
+
+    private List<String> lines;
+    private byte[][] lineBytes;
+
+    private final SalesCsvParser parser = new SalesCsvParser();
+
+    @Setup
+    public void setUp() {
+        lines = BenchmarkData.csvLines(recordsCount, categoriesCount);
+        lineBytes = new byte[lines.size()][];
+        for (int i = 0; i < lines.size(); i++) {
+            lineBytes[i] = lines.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public void fromCsvLine(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(SalesRecord.fromCsvLine(line));
+        }
+    }
+
+    @Benchmark
+    public void byteParserFields(Blackhole blackhole) {
+        for (byte[] bytes : lineBytes) {
+            parser.parse(bytes, 0, bytes.length);
+            blackhole.consume(parser.priceUnscaled());
+            blackhole.consume(parser.quantity());
+        }
+    }
+
+    @Benchmark
+    public void byteParserToRecord(Blackhole blackhole) {
+        for (byte[] bytes : lineBytes) {
+            parser.parse(bytes, 0, bytes.length);
+            blackhole.consume(parser.toRecord());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package se.ifmo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.ifmo.io.CsvSplit;
+import se.ifmo.io.SalesCsvReader;
+import se.ifmo.mapreduce.PartitionedMapContext;
+import se.ifmo.mapreduce.runtime.MapPhaseRunner;
+import se.ifmo.mapreduce.runtime.ReducePhaseRunner;
+import se.ifmo.mapreduce.sales.SalesMapper;
+import se.ifmo.mapreduce.sales.SalesReducer;
+import se.ifmo.model.CategoryStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full pipeline over a generated CSV file: split, parse, map with combiner, reduce and sort.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int threadsCount;
+
+    @Param({"100000", "1000000"})
+    private int recordsCount;
+
+    @Param({"20", "10000"})
+    private int categoriesCount;
+
+    private Path directory;
+    private List<Path> files;
+
+    private final SalesMapper mapper = new SalesMapper();
+    private final SalesReducer reducer = new SalesReducer();
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("sales-bench");
+        files = List.of(BenchmarkData.writeCsv(directory, recordsCount, categoriesCount));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, CategoryStats>> pipeline() throws IOException {
+        List<CsvSplit> splits = SalesCsvReader.createSplits(files, SalesCsvReader.splitSizeFor(files, threadsCount * 4));
+
+        PartitionedMapContext<String, CategoryStats> context = new PartitionedMapContext<>(threadsCount);
+        new MapPhaseRunner(threadsCount).runSplits(splits, mapper, reducer, context);
+
+        Map<String, CategoryStats> reduced = new ReducePhaseRunner(threadsCount).runReduce(context, reducer);
+
+        List<Map.Entry<String, CategoryStats>> sorted = new ArrayList<>(reduced.entrySet());
+        sorted.sort((e1, e2) -> CategoryStats.compareByRevenue(e2.getValue(), e1.getValue()));
+        return sorted;
+    }
+}
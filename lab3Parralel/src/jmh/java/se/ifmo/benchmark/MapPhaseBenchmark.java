@@ -0,0 +1,64 @@
+package se.ifmo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.ifmo.mapreduce.PartitionedMapContext;
+import se.ifmo.mapreduce.runtime.MapPhaseRunner;
+import se.ifmo.mapreduce.sales.SalesMapper;
+import se.ifmo.mapreduce.sales.SalesReducer;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesRecord;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapPhaseBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int threadsCount;
+
+    @Param({"100000", "1000000"})
+    private int recordsCount;
+
+    @Param({"20", "10000"})
+    private int categoriesCount;
+
+    private List<SalesRecord> records;
+
+    private final SalesMapper mapper = new SalesMapper();
+    private final SalesReducer combiner = new SalesReducer();
+
+    @Setup
+    public void setUp() {
+        records = BenchmarkData.records(recordsCount, categoriesCount);
+    }
+
+    @Benchmark
+    public PartitionedMapContext<String, CategoryStats> map() {
+        PartitionedMapContext<String, CategoryStats> context = new PartitionedMapContext<>(threadsCount);
+        new MapPhaseRunner(threadsCount).run(records, mapper, context);
+        return context;
+    }
+
+    @Benchmark
+    public PartitionedMapContext<String, CategoryStats> mapWithCombiner() {
+        PartitionedMapContext<String, CategoryStats> context = new PartitionedMapContext<>(threadsCount);
+        new MapPhaseRunner(threadsCount).run(records, mapper, combiner, context);
+        return context;
+    }
+}
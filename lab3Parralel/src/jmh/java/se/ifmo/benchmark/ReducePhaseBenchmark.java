@@ -0,0 +1,60 @@
+package se.ifmo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.ifmo.mapreduce.InMemoryMapContext;
+import se.ifmo.mapreduce.runtime.ReducePhaseRunner;
+import se.ifmo.mapreduce.sales.SalesMapper;
+import se.ifmo.mapreduce.sales.SalesReducer;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesRecord;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReducePhaseBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int threadsCount;
+
+    @Param({"100000", "1000000"})
+    private int recordsCount;
+
+    @Param({"20", "10000"})
+    private int categoriesCount;
+
+    private Map<String, List<CategoryStats>> groupedData;
+
+    private final SalesReducer reducer = new SalesReducer();
+
+    @Setup
+    public void setUp() {
+        SalesMapper mapper = new SalesMapper();
+        InMemoryMapContext<String, CategoryStats> context = new InMemoryMapContext<>();
+        for (SalesRecord record : BenchmarkData.records(recordsCount, categoriesCount)) {
+            mapper.map(record, context);
+        }
+        groupedData = context.getGroupedData();
+    }
+
+    @Benchmark
+    public Map<String, CategoryStats> reduce() {
+        return new ReducePhaseRunner(threadsCount).runReduce(groupedData, reducer);
+    }
+}
@@ -0,0 +1,104 @@
+package se.ifmo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.ifmo.mapreduce.InMemoryMapContext;
+import se.ifmo.mapreduce.MapContext;
+import se.ifmo.mapreduce.PartitionedMapContext;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MapContext#write} under contention: {@code threadsCount} writers on a
+ * pre-started pool emit all records into one fresh context per invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShuffleWriteBenchmark {
+
+    public enum ContextType {
+        IN_MEMORY,
+        PARTITIONED
+    }
+
+    @Param({"IN_MEMORY", "PARTITIONED"})
+    private ContextType contextType;
+
+    @Param({"1", "2", "4", "8"})
+    private int threadsCount;
+
+    @Param({"1000000"})
+    private int recordsCount;
+
+    @Param({"20", "10000"})
+    private int categoriesCount;
+
+    private String[] keys;
+    private CategoryStats[] values;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        List<SalesRecord> records = BenchmarkData.records(recordsCount, categoriesCount);
+        keys = new String[records.size()];
+        values = new CategoryStats[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            SalesRecord record = records.get(i);
+            keys[i] = record.category();
+            values[i] = CategoryStats.of(record.price(), record.quantity());
+        }
+        executor = Executors.newFixedThreadPool(threadsCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public MapContext<String, CategoryStats> write() throws InterruptedException, ExecutionException {
+        MapContext<String, CategoryStats> context = contextType == ContextType.IN_MEMORY
+                ? new InMemoryMapContext<>()
+                : new PartitionedMapContext<>(threadsCount);
+
+        int chunkSize = (keys.length + threadsCount - 1) / threadsCount;
+        List<Future<?>> writers = new ArrayList<>(threadsCount);
+        for (int start = 0; start < keys.length; start += chunkSize) {
+            int from = start;
+            int to = Math.min(start + chunkSize, keys.length);
+            writers.add(executor.submit(() -> {
+                MapContext<String, CategoryStats> taskContext = context.taskContext();
+                for (int i = from; i < to; i++) {
+                    taskContext.write(keys[i], values[i]);
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        return context;
+    }
+}
@@ -2,30 +2,44 @@ package se.ifmo;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.ifmo.io.CsvSplit;
 import se.ifmo.io.SalesCsvReader;
+import se.ifmo.model.CategoryDictionary;
 import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesColumnStore;
 import se.ifmo.model.SalesRecord;
-import se.ifmo.mapreduce.InMemoryMapContext;
-import se.ifmo.mapreduce.MapContext;
 import se.ifmo.mapreduce.Mapper;
-import se.ifmo.mapreduce.Reducer;
+import se.ifmo.mapreduce.PartitionedMapContext;
+import se.ifmo.mapreduce.runtime.DictionaryAggregationRunner;
+import se.ifmo.mapreduce.runtime.FileIngestionRunner;
+import se.ifmo.mapreduce.runtime.IncrementalJobRunner;
+import se.ifmo.mapreduce.runtime.JobEngine;
+import se.ifmo.mapreduce.runtime.JobInput;
 import se.ifmo.mapreduce.runtime.MapPhaseRunner;
+import se.ifmo.mapreduce.runtime.MapReduceJob;
+import se.ifmo.mapreduce.runtime.PipelinedMapReduceRunner;
+import se.ifmo.mapreduce.runtime.RankStage;
 import se.ifmo.mapreduce.runtime.ReducePhaseRunner;
+import se.ifmo.mapreduce.runtime.StreamingMapPhaseRunner;
+import se.ifmo.mapreduce.sales.AggregatingMapContext;
 import se.ifmo.mapreduce.sales.SalesMapper;
 import se.ifmo.mapreduce.sales.SalesReducer;
+import se.ifmo.mapreduce.sales.SalesRowMapper;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Formatter;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class SalesAnalysisApp {
 
@@ -37,28 +51,146 @@ public class SalesAnalysisApp {
 
     private static final String OUTPUT_PERFORMANCE_FILE = "output/performance.csv";
 
+    private static final String CHECKPOINT_FILE = "output/checkpoint.bin";
+
+    private static final String SPILL_DIRECTORY = "output/spill";
+    private static final long SPILL_MEMORY_BUDGET_BYTES = 4L * 1024 * 1024;
+
     private static final int DEFAULT_MAP_THREADS = 4;
     private static final int DEFAULT_REDUCE_THREADS = 4;
 
+    private static final int SPLITS_PER_MAP_THREAD = 4;
+
+    private final JobEngine engine = new JobEngine();
+
+    private final RankStage rankStage = new RankStage(DEFAULT_REDUCE_THREADS);
+
+    private final int topK;
+
+    public SalesAnalysisApp(int topK) {
+        this.topK = topK;
+    }
+
     public static void main(String[] args) {
-        SalesAnalysisApp app = new SalesAnalysisApp();
+        SalesAnalysisApp app = new SalesAnalysisApp(topKFromArgs(args));
         try {
-            List<SalesRecord> records = SalesCsvReader.readAllFromDirectory(INPUT_DIRECTORY);
-            LOG.info("Loaded {} sales records from '{}'", records.size(), INPUT_DIRECTORY);
+            ExecutionMode mode = ExecutionMode.fromArgs(args);
+            LOG.info("Using execution mode {}, topK={}", mode, app.topK > 0 ? app.topK : "all");
+
+            Analysis analysis = app.prepareAnalysis(mode);
 
-            app.runSingleAnalysis(records, DEFAULT_MAP_THREADS, DEFAULT_REDUCE_THREADS);
+            app.runSingleAnalysis(analysis, DEFAULT_MAP_THREADS, DEFAULT_REDUCE_THREADS);
 
             int[] mapThreadProfiles = {1, 2, 4, 8};
             int[] reduceThreadProfiles = {1, 2, 4, 8};
-            app.runPerformanceExperiments(records, mapThreadProfiles, reduceThreadProfiles);
+            app.runPerformanceExperiments(analysis, mapThreadProfiles, reduceThreadProfiles);
 
         } catch (Exception e) {
             LOG.error("Failed to run SalesAnalysisApp", e);
             System.exit(1);
+        } finally {
+            app.engine.close();
+        }
+    }
+
+    /**
+     * Optional second argument: only the given number of best-selling categories is ranked and written.
+     */
+    private static int topKFromArgs(String[] args) {
+        if (args == null || args.length < 2) {
+            return 0;
+        }
+        int topK = Integer.parseInt(args[1].trim());
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must be > 0");
+        }
+        return topK;
+    }
+
+    private Analysis prepareAnalysis(ExecutionMode mode) throws IOException {
+        switch (mode) {
+            case SPLITS: {
+                List<Path> files = SalesCsvReader.listCsvFiles(Paths.get(INPUT_DIRECTORY));
+                LOG.info("Splitting {} CSV files from '{}'", files.size(), INPUT_DIRECTORY);
+                return (mapThreads, reduceThreads) ->
+                        executeSplitMapReduce(files, mapThreads, reduceThreads);
+            }
+            case DICTIONARY: {
+                List<Path> files = SalesCsvReader.listCsvFiles(Paths.get(INPUT_DIRECTORY));
+                LOG.info("Aggregating {} CSV files from '{}' by category id", files.size(), INPUT_DIRECTORY);
+                return (mapThreads, reduceThreads) ->
+                        executeDictionaryAggregation(files, mapThreads);
+            }
+            case COLUMNAR: {
+                SalesColumnStore store =
+                        SalesCsvReader.readColumnarFromDirectory(Paths.get(INPUT_DIRECTORY), DEFAULT_MAP_THREADS);
+                LOG.info("Loaded {} sales rows off-heap from '{}'", store.rowsCount(), INPUT_DIRECTORY);
+                return (mapThreads, reduceThreads) ->
+                        executeColumnarMapReduce(store, mapThreads, reduceThreads);
+            }
+            case SPILLING: {
+                List<Path> files = SalesCsvReader.listCsvFiles(Paths.get(INPUT_DIRECTORY));
+                LOG.info("Aggregating {} CSV files from '{}' with a {} byte spill budget per map thread",
+                        files.size(), INPUT_DIRECTORY, SPILL_MEMORY_BUDGET_BYTES);
+                return (mapThreads, reduceThreads) ->
+                        executeSpillingMapReduce(files, mapThreads, reduceThreads);
+            }
+            case INCREMENTAL: {
+                List<Path> files = SalesCsvReader.listCsvFiles(Paths.get(INPUT_DIRECTORY));
+                LOG.info("Incrementally aggregating {} CSV files from '{}' with checkpoint '{}'",
+                        files.size(), INPUT_DIRECTORY, CHECKPOINT_FILE);
+                return (mapThreads, reduceThreads) ->
+                        executeIncrementalMapReduce(files, mapThreads, reduceThreads);
+            }
+            case PIPELINED: {
+                List<Path> files = SalesCsvReader.listCsvFiles(Paths.get(INPUT_DIRECTORY));
+                LOG.info("Pipelining {} CSV files from '{}'", files.size(), INPUT_DIRECTORY);
+                return (mapThreads, reduceThreads) ->
+                        executePipelinedMapReduce(files, mapThreads, reduceThreads);
+            }
+            case VIRTUAL_INGESTION:
+            case PLATFORM_INGESTION: {
+                List<Path> files = SalesCsvReader.listCsvFiles(Paths.get(INPUT_DIRECTORY));
+                FileIngestionRunner.ReaderThreads readerThreads = mode == ExecutionMode.VIRTUAL_INGESTION
+                        ? FileIngestionRunner.ReaderThreads.VIRTUAL
+                        : FileIngestionRunner.ReaderThreads.PLATFORM;
+                LOG.info("Ingesting {} CSV files from '{}' with {} reader threads",
+                        files.size(), INPUT_DIRECTORY, readerThreads);
+                return (mapThreads, reduceThreads) ->
+                        executeIngestionMapReduce(files, readerThreads, mapThreads, reduceThreads);
+            }
+            case STREAMING: {
+                List<Path> files = SalesCsvReader.listCsvFiles(Paths.get(INPUT_DIRECTORY));
+                LOG.info("Streaming {} CSV files from '{}'", files.size(), INPUT_DIRECTORY);
+                return (mapThreads, reduceThreads) ->
+                        executeStreamingMapReduce(files, mapThreads, reduceThreads);
+            }
+            case AGGREGATING: {
+                List<SalesRecord> records =
+                        SalesCsvReader.readAllFromDirectory(Paths.get(INPUT_DIRECTORY), DEFAULT_MAP_THREADS);
+                LOG.info("Loaded {} sales records from '{}'", records.size(), INPUT_DIRECTORY);
+                return (mapThreads, reduceThreads) ->
+                        executeAggregatingMapReduce(records, mapThreads);
+            }
+            case FORK_JOIN: {
+                List<SalesRecord> records =
+                        SalesCsvReader.readAllFromDirectory(Paths.get(INPUT_DIRECTORY), DEFAULT_MAP_THREADS);
+                LOG.info("Loaded {} sales records from '{}'", records.size(), INPUT_DIRECTORY);
+                return (mapThreads, reduceThreads) ->
+                        executeForkJoinMapReduce(records, mapThreads, reduceThreads);
+            }
+            case IN_MEMORY:
+            default: {
+                List<SalesRecord> records =
+                        SalesCsvReader.readAllFromDirectory(Paths.get(INPUT_DIRECTORY), DEFAULT_MAP_THREADS);
+                LOG.info("Loaded {} sales records from '{}'", records.size(), INPUT_DIRECTORY);
+                return (mapThreads, reduceThreads) ->
+                        executeMapReduce(records, mapThreads, reduceThreads);
+            }
         }
     }
 
-    private void runSingleAnalysis(List<SalesRecord> records,
+    private void runSingleAnalysis(Analysis analysis,
                                    int mapThreads,
                                    int reduceThreads) throws IOException, InterruptedException {
 
@@ -68,7 +200,7 @@ public class SalesAnalysisApp {
         long start = System.currentTimeMillis();
 
         List<Map.Entry<String, CategoryStats>> results =
-                executeMapReduce(records, mapThreads, reduceThreads);
+                analysis.execute(mapThreads, reduceThreads);
 
         long duration = System.currentTimeMillis() - start;
 
@@ -82,24 +214,230 @@ public class SalesAnalysisApp {
                                                                     int reduceThreads) throws InterruptedException {
 
         Mapper<SalesRecord, String, CategoryStats> mapper = new SalesMapper();
-        Reducer<String, CategoryStats, CategoryStats> reducer = new SalesReducer();
+        SalesReducer reducer = new SalesReducer();
 
-        MapContext<String, CategoryStats> mapContext = new InMemoryMapContext<>();
+        PartitionedMapContext<String, CategoryStats> mapContext = new PartitionedMapContext<>(reduceThreads);
 
         MapPhaseRunner mapRunner = new MapPhaseRunner(mapThreads);
         ReducePhaseRunner reduceRunner = new ReducePhaseRunner(reduceThreads);
 
-        // Map
-        mapRunner.run(records, mapper, mapContext);
+        // Map + Combine
+        mapRunner.run(records, mapper, reducer, mapContext);
+
+        // Reduce
+        Map<String, CategoryStats> reduced =
+                reduceRunner.runReduce(mapContext, reducer);
+
+        return rankByRevenue(reduced);
+    }
+
+    private List<Map.Entry<String, CategoryStats>> executeAggregatingMapReduce(List<SalesRecord> records,
+                                                                               int mapThreads) {
+
+        AggregatingMapContext<String> mapContext = new AggregatingMapContext<>();
+
+        MapPhaseRunner mapRunner = new MapPhaseRunner(mapThreads);
+
+        // Map, folding every value into its category's striped cells on write
+        mapRunner.run(records, new SalesMapper(), mapContext);
+
+        // Reduce is a sum over the cells
+        return rankByRevenue(mapContext.getAggregatedData());
+    }
+
+    private List<Map.Entry<String, CategoryStats>> executeDictionaryAggregation(List<Path> files,
+                                                                                int mapThreads) throws IOException {
+
+        DictionaryAggregationRunner runner = new DictionaryAggregationRunner(mapThreads);
+
+        int splitsCount = mapThreads * SPLITS_PER_MAP_THREAD;
+        List<CsvSplit> splits = SalesCsvReader.createSplits(files, SalesCsvReader.splitSizeFor(files, splitsCount));
+
+        // Split + Parse + fold into per-task arrays indexed by category id; names are decoded at the end
+        Map<String, CategoryStats> totals = runner.runSplits(splits, new CategoryDictionary());
+
+        return rankByRevenue(totals);
+    }
+
+    private List<Map.Entry<String, CategoryStats>> executeColumnarMapReduce(SalesColumnStore store,
+                                                                            int mapThreads,
+                                                                            int reduceThreads) {
+
+        SalesReducer reducer = new SalesReducer();
+
+        PartitionedMapContext<String, CategoryStats> mapContext = new PartitionedMapContext<>(reduceThreads);
+
+        MapPhaseRunner mapRunner = new MapPhaseRunner(mapThreads);
+        ReducePhaseRunner reduceRunner = new ReducePhaseRunner(reduceThreads);
+
+        // Scan columns + Map + Combine
+        mapRunner.runColumns(store, new SalesRowMapper(), reducer, mapContext);
+
+        // Reduce
+        Map<String, CategoryStats> reduced =
+                reduceRunner.runReduce(mapContext, reducer);
+
+        return rankByRevenue(reduced);
+    }
+
+    private List<Map.Entry<String, CategoryStats>> executeForkJoinMapReduce(List<SalesRecord> records,
+                                                                            int mapThreads,
+                                                                            int reduceThreads)
+            throws IOException, InterruptedException {
+
+        SalesReducer reducer = new SalesReducer();
+
+        // Map and Reduce run on the engine's pools, which are kept for later runs
+        MapReduceJob job = MapReduceJob.builder(JobInput.records(records), new SalesMapper(), reducer)
+                .combiner(reducer)
+                .mapParallelism(mapThreads)
+                .reduceParallelism(reduceThreads)
+                .reducePartitions(reduceThreads)
+                .build();
+
+        return rankByRevenue(runJob(job));
+    }
+
+    private List<Map.Entry<String, CategoryStats>> executeSpillingMapReduce(List<Path> files,
+                                                                            int mapThreads,
+                                                                            int reduceThreads)
+            throws IOException, InterruptedException {
+
+        SalesReducer reducer = new SalesReducer();
+
+        // Split totals are combined before the sort/spill shuffle, so the few category keys do not
+        // turn into groups of millions of single-row values
+        MapReduceJob job = MapReduceJob.builder(
+                        JobInput.files(files, mapThreads * SPLITS_PER_MAP_THREAD), new SalesMapper(), reducer)
+                .combiner(reducer)
+                .mapParallelism(mapThreads)
+                .reduceParallelism(reduceThreads)
+                .reducePartitions(reduceThreads)
+                .spill(SPILL_MEMORY_BUDGET_BYTES, Paths.get(SPILL_DIRECTORY))
+                .build();
+
+        return rankByRevenue(runJob(job));
+    }
+
+    private List<Map.Entry<String, CategoryStats>> executeIncrementalMapReduce(List<Path> files,
+                                                                              int mapThreads,
+                                                                              int reduceThreads)
+            throws IOException, InterruptedException {
+
+        IncrementalJobRunner runner = new IncrementalJobRunner(engine, Paths.get(CHECKPOINT_FILE));
+
+        // Only files that are new or changed since the checkpoint are mapped
+        Map<String, CategoryStats> totals = runner.run(files, changedFiles -> {
+            SalesReducer reducer = new SalesReducer();
+            return MapReduceJob.builder(
+                            JobInput.files(changedFiles, mapThreads * SPLITS_PER_MAP_THREAD), new SalesMapper(), reducer)
+                    .name("incremental " + changedFiles)
+                    .combiner(reducer)
+                    .mapParallelism(mapThreads)
+                    .reduceParallelism(reduceThreads)
+                    .reducePartitions(reduceThreads)
+                    .build();
+        });
+
+        return rankByRevenue(totals);
+    }
+
+    private Map<String, CategoryStats> runJob(MapReduceJob job) throws IOException, InterruptedException {
+        try {
+            return engine.submit(job).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException("MapReduce job failed", e.getCause());
+        }
+    }
+
+    private List<Map.Entry<String, CategoryStats>> executeStreamingMapReduce(List<Path> files,
+                                                                             int mapThreads,
+                                                                             int reduceThreads)
+            throws IOException, InterruptedException {
+
+        Mapper<SalesRecord, String, CategoryStats> mapper = new SalesMapper();
+        SalesReducer reducer = new SalesReducer();
+
+        PartitionedMapContext<String, CategoryStats> mapContext = new PartitionedMapContext<>(reduceThreads);
+
+        StreamingMapPhaseRunner mapRunner = new StreamingMapPhaseRunner(mapThreads);
+        ReducePhaseRunner reduceRunner = new ReducePhaseRunner(reduceThreads);
+
+        // Read + Parse + Map + Combine
+        mapRunner.run(files, mapper, reducer, mapContext);
 
         // Reduce
         Map<String, CategoryStats> reduced =
-                reduceRunner.runReduce(mapContext.getGroupedData(), reducer);
+                reduceRunner.runReduce(mapContext, reducer);
 
-        return sortByRevenueDesc(reduced);
+        return rankByRevenue(reduced);
     }
 
-    private void runPerformanceExperiments(List<SalesRecord> records,
+    private List<Map.Entry<String, CategoryStats>> executeIngestionMapReduce(List<Path> files,
+                                                                             FileIngestionRunner.ReaderThreads readerThreads,
+                                                                             int mapThreads,
+                                                                             int reduceThreads) throws IOException {
+
+        Mapper<SalesRecord, String, CategoryStats> mapper = new SalesMapper();
+        SalesReducer reducer = new SalesReducer();
+
+        PartitionedMapContext<String, CategoryStats> mapContext = new PartitionedMapContext<>(reduceThreads);
+
+        FileIngestionRunner mapRunner = new FileIngestionRunner(mapThreads, readerThreads);
+        ReducePhaseRunner reduceRunner = new ReducePhaseRunner(reduceThreads);
+
+        // Read (one reader per file) + Parse + Map + Combine on mapThreads workers
+        mapRunner.run(files, mapper, reducer, mapContext);
+
+        // Reduce
+        Map<String, CategoryStats> reduced =
+                reduceRunner.runReduce(mapContext, reducer);
+
+        return rankByRevenue(reduced);
+    }
+
+    private List<Map.Entry<String, CategoryStats>> executeSplitMapReduce(List<Path> files,
+                                                                         int mapThreads,
+                                                                         int reduceThreads)
+            throws IOException, InterruptedException {
+
+        SalesReducer reducer = new SalesReducer();
+
+        // Split + Parse + Map + Combine, then Reduce, on the engine's pools
+        MapReduceJob job = MapReduceJob.builder(
+                        JobInput.files(files, mapThreads * SPLITS_PER_MAP_THREAD), new SalesMapper(), reducer)
+                .combiner(reducer)
+                .mapParallelism(mapThreads)
+                .reduceParallelism(reduceThreads)
+                .reducePartitions(reduceThreads)
+                .build();
+
+        return rankByRevenue(runJob(job));
+    }
+
+    private List<Map.Entry<String, CategoryStats>> executePipelinedMapReduce(List<Path> files,
+                                                                             int mapThreads,
+                                                                             int reduceThreads)
+            throws IOException {
+
+        SalesReducer reducer = new SalesReducer();
+
+        PipelinedMapReduceRunner runner = new PipelinedMapReduceRunner(mapThreads, reduceThreads);
+
+        int splitsCount = mapThreads * SPLITS_PER_MAP_THREAD;
+        List<CsvSplit> splits = SalesCsvReader.createSplits(files, SalesCsvReader.splitSizeFor(files, splitsCount));
+
+        // Split + Parse + Map + Combine, reduced as map tasks complete
+        Map<String, CategoryStats> reduced =
+                runner.runSplits(splits, new SalesMapper(), reducer, reducer);
+
+        return rankByRevenue(reduced);
+    }
+
+    private void runPerformanceExperiments(Analysis analysis,
                                            int[] mapThreadProfiles,
                                            int[] reduceThreadProfiles) throws IOException, InterruptedException {
 
@@ -123,7 +461,7 @@ public class SalesAnalysisApp {
                     long start = System.currentTimeMillis();
 
                     List<Map.Entry<String, CategoryStats>> results =
-                            executeMapReduce(records, mapThreads, reduceThreads);
+                            analysis.execute(mapThreads, reduceThreads);
 
                     long duration = System.currentTimeMillis() - start;
 
@@ -137,16 +475,13 @@ public class SalesAnalysisApp {
         LOG.info("Performance results written to '{}'", perfPath.toAbsolutePath());
     }
 
-    private List<Map.Entry<String, CategoryStats>> sortByRevenueDesc(
+    private List<Map.Entry<String, CategoryStats>> rankByRevenue(
             Map<String, CategoryStats> reducedMap) {
 
-        List<Map.Entry<String, CategoryStats>> list = new ArrayList<>(reducedMap.entrySet());
-        list.sort((e1, e2) -> e2.getValue().totalRevenue()
-                .compareTo(e1.getValue().totalRevenue()));
-        return list;
+        return topK > 0 ? rankStage.topK(reducedMap, topK) : rankStage.sort(reducedMap);
     }
 
-    private void writeResultsToFile(List<Map.Entry<String, CategoryStats>> results,
+    private void writeResultsToFile(Iterable<Map.Entry<String, CategoryStats>> results,
                                     String outputFilePath) throws IOException {
 
         Path outPath = Paths.get(outputFilePath);
@@ -155,8 +490,10 @@ public class SalesAnalysisApp {
             Files.createDirectories(parent);
         }
 
-        try (BufferedWriter writer = Files.newBufferedWriter(outPath, StandardCharsets.UTF_8)) {
-            writer.write(String.format("%-15s %-12s %-10s%n", "Category", "Revenue", "Quantity"));
+        // Rows are formatted straight into the buffered writer as the ranking is iterated
+        try (BufferedWriter writer = Files.newBufferedWriter(outPath, StandardCharsets.UTF_8);
+             Formatter formatter = new Formatter(writer, Locale.US)) {
+            formatter.format("%-15s %-12s %-10s%n", "Category", "Revenue", "Quantity");
 
             for (Map.Entry<String, CategoryStats> entry : results) {
                 String category = entry.getKey();
@@ -165,15 +502,40 @@ public class SalesAnalysisApp {
                 BigDecimal revenue = stats.totalRevenue();
                 long quantity = stats.totalQuantity();
 
-                String revenueStr = String.format(Locale.US, "%.2f", revenue);
+                formatter.format("%-15s %-12.2f %-10d%n", category, revenue, quantity);
+            }
+            if (formatter.ioException() != null) {
+                throw formatter.ioException();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Analysis {
+
+        List<Map.Entry<String, CategoryStats>> execute(int mapThreads, int reduceThreads)
+                throws IOException, InterruptedException;
+    }
 
-                writer.write(String.format(
-                        "%-15s %-12s %-10d%n",
-                        category,
-                        revenueStr,
-                        quantity
-                ));
+    private enum ExecutionMode {
+        IN_MEMORY,
+        STREAMING,
+        SPLITS,
+        FORK_JOIN,
+        PIPELINED,
+        INCREMENTAL,
+        SPILLING,
+        COLUMNAR,
+        DICTIONARY,
+        AGGREGATING,
+        VIRTUAL_INGESTION,
+        PLATFORM_INGESTION;
+
+        static ExecutionMode fromArgs(String[] args) {
+            if (args == null || args.length == 0) {
+                return IN_MEMORY;
             }
+            return valueOf(args[0].trim().toUpperCase(Locale.ROOT).replace('-', '_'));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.ifmo.io.SalesCsvParser;
+import se.ifmo.model.FixedPointRevenue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses CSV lines with {@link SalesCsvParser} and emits the exact revenue and quantity of every row
+ * under a key derived from its category by {@link #key}, optionally summing per key inside the task.
+ */
+public abstract class AbstractHadoopSalesMapper<K extends Writable> extends Mapper<LongWritable, Text, K, SalesWritable> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractHadoopSalesMapper.class);
+
+    /**
+     * When set, the mapper sums revenue and quantity per category itself and only emits the totals
+     * from {@link #cleanup}, instead of one record per CSV line.
+     */
+    public static final String IN_MAPPER_AGGREGATION = "se.ifmo.sales.mapper.aggregate";
+
+    /**
+     * Number of distinct categories after which in-mapper totals are flushed early, bounding memory.
+     */
+    public static final String IN_MAPPER_MAX_CATEGORIES = "se.ifmo.sales.mapper.aggregate.max-categories";
+
+    static final int DEFAULT_IN_MAPPER_MAX_CATEGORIES = 10_000;
+
+    private final SalesCsvParser parser = new SalesCsvParser();
+
+    private final SalesWritable outValue = new SalesWritable();
+
+    private Map<K, SalesWritable> totals;
+    private int maxCategories;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        if (context.getConfiguration().getBoolean(IN_MAPPER_AGGREGATION, false)) {
+            totals = new HashMap<>();
+            maxCategories = context.getConfiguration().getInt(IN_MAPPER_MAX_CATEGORIES, DEFAULT_IN_MAPPER_MAX_CATEGORIES);
+        }
+    }
+
+    @Override
+    protected void map(LongWritable key,
+                       Text value,
+                       Context context) throws IOException, InterruptedException {
+
+        byte[] bytes = value.getBytes();
+        int length = value.getLength();
+
+        try {
+            if (!parser.parse(bytes, 0, length)) {
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Failed to parse CSV line '{}': {}", parser.lineText(), e.getMessage());
+            return;
+        }
+
+        long quantity = parser.quantity();
+
+        K outKey = key(value, parser);
+        setRevenue(quantity);
+
+        if (totals == null) {
+            context.write(outKey, outValue);
+            return;
+        }
+
+        SalesWritable total = totals.get(outKey);
+        if (total != null) {
+            total.addInPlace(outValue);
+            return;
+        }
+        if (totals.size() >= maxCategories) {
+            flush(context);
+        }
+        total = new SalesWritable();
+        total.set(outValue);
+        totals.put(copyOf(outKey), total);
+    }
+
+    /**
+     * Returns the map output key of the row parsed from {@code line}; the instance may be reused
+     * between calls.
+     */
+    protected abstract K key(Text line, SalesCsvParser row) throws IOException;
+
+    protected abstract K copyOf(K key);
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        if (totals != null) {
+            flush(context);
+        }
+    }
+
+    private void flush(Context context) throws IOException, InterruptedException {
+        for (Map.Entry<K, SalesWritable> entry : totals.entrySet()) {
+            context.write(entry.getKey(), entry.getValue());
+        }
+        totals.clear();
+    }
+
+    private void setRevenue(long quantity) {
+        if (parser.hasFixedPointPrice()) {
+            long units = FixedPointRevenue.multiply(
+                    FixedPointRevenue.toUnits(parser.priceUnscaled(), parser.priceScale()), quantity);
+            if (units != FixedPointRevenue.NOT_REPRESENTABLE) {
+                outValue.set(units, quantity);
+                return;
+            }
+        }
+        outValue.set(parser.price().multiply(BigDecimal.valueOf(quantity)), quantity);
+    }
+}
@@ -0,0 +1,62 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+
+/**
+ * Sums the {@link SalesWritable}s of a category and writes {@code category<TAB>revenue<TAB>quantity},
+ * naming the category by {@link #name}. With {@link #TOTALS_OUTPUT} set it writes
+ * {@code (total, category)} pairs instead, keyed for the revenue ranking stage of {@link HadoopSalesJob}.
+ */
+public abstract class AbstractHadoopSalesReducer<K extends Writable> extends Reducer<K, SalesWritable, Writable, Writable> {
+
+    /**
+     * When set, the reducer emits the unformatted {@link SalesWritable} total as the key and the
+     * category name as the value.
+     */
+    public static final String TOTALS_OUTPUT = "se.ifmo.sales.reducer.totals-output";
+
+    private final Text outValue = new Text();
+
+    private final SalesWritable total = new SalesWritable();
+
+    private boolean totalsOutput;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        totalsOutput = context.getConfiguration().getBoolean(TOTALS_OUTPUT, false);
+    }
+
+    @Override
+    protected void reduce(K key,
+                          Iterable<SalesWritable> values,
+                          Context context) throws IOException, InterruptedException {
+
+        total.set(0L, 0L);
+        for (SalesWritable v : values) {
+            total.addInPlace(v);
+        }
+
+        if (totalsOutput) {
+            context.write(total, name(key));
+        } else {
+            outValue.set(format(total));
+            context.write(name(key), outValue);
+        }
+    }
+
+    protected abstract Text name(K key);
+
+    /**
+     * Formats {@code total} as {@code revenue<TAB>quantity}, with the exact revenue rounded to cents
+     * only here.
+     */
+    static String format(SalesWritable total) {
+        return total.getTotalRevenue().setScale(2, RoundingMode.HALF_UP).toPlainString()
+                + "\t" + total.getTotalQuantity();
+    }
+}
@@ -0,0 +1,50 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+import se.ifmo.model.CategoryDictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Side file that gives every map and reduce task of a job the same category ids: one category per
+ * line, where the line number is the id. {@link HadoopSalesJob} builds it with a distinct-category
+ * job whose single reducer writes the names in {@link Text} byte order, so sorting by id yields the
+ * same order as sorting by name. Lines are the raw category bytes and are never decoded, so names
+ * that are not valid UTF-8 keep their ids and are written back unchanged.
+ */
+public final class CategoryDictionaryFile {
+
+    /**
+     * Configuration key holding the URI of the dictionary file.
+     */
+    public static final String CATEGORY_DICTIONARY = "se.ifmo.sales.category-dictionary";
+
+    private CategoryDictionaryFile() {
+    }
+
+    /**
+     * Loads the dictionary named by {@link #CATEGORY_DICTIONARY}; ids follow the line order.
+     */
+    public static CategoryDictionary read(Configuration conf) throws IOException {
+        String location = conf.get(CATEGORY_DICTIONARY);
+        if (location == null) {
+            throw new IOException("Category dictionary is not configured: " + CATEGORY_DICTIONARY);
+        }
+
+        Path path = new Path(location);
+        CategoryDictionary dictionary = new CategoryDictionary();
+        Text line = new Text();
+        try (LineReader reader = new LineReader(path.getFileSystem(conf).open(path), conf)) {
+            while (reader.readLine(line) > 0) {
+                if (line.getLength() > 0) {
+                    dictionary.idOf(ByteBuffer.wrap(line.getBytes()), 0, line.getLength());
+                }
+            }
+        }
+        return dictionary;
+    }
+}
@@ -0,0 +1,85 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Category key encoded as its {@link CategoryDictionaryFile} id. Serialized as a VInt, so a key
+ * usually takes one byte, and sorted by {@link Comparator} straight from the serialized bytes.
+ */
+public class CategoryIdWritable implements WritableComparable<CategoryIdWritable> {
+
+    static {
+        WritableComparator.define(CategoryIdWritable.class, new Comparator());
+    }
+
+    private int id;
+
+    public CategoryIdWritable() {
+    }
+
+    public CategoryIdWritable(int id) {
+        this.id = id;
+    }
+
+    public int get() {
+        return id;
+    }
+
+    public void set(int id) {
+        this.id = id;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, id);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.id = WritableUtils.readVInt(in);
+    }
+
+    @Override
+    public int compareTo(CategoryIdWritable other) {
+        return Integer.compare(id, other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CategoryIdWritable)) return false;
+        return id == ((CategoryIdWritable) o).id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return Integer.toString(id);
+    }
+
+    public static class Comparator extends WritableComparator {
+
+        public Comparator() {
+            super(CategoryIdWritable.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                return Integer.compare(readVInt(b1, s1), readVInt(b2, s2));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Malformed CategoryIdWritable key", e);
+            }
+        }
+    }
+}
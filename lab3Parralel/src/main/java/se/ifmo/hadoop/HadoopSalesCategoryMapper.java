@@ -0,0 +1,56 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import se.ifmo.io.SalesCsvParser;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Emits the category of every row once per task, skipping categories the task has already seen;
+ * the map side of the job that builds the {@link CategoryDictionaryFile}.
+ */
+public class HadoopSalesCategoryMapper extends Mapper<LongWritable, Text, Text, NullWritable> {
+
+    private final SalesCsvParser parser = new SalesCsvParser();
+
+    private final Text outKey = new Text();
+
+    private final Set<Text> seen = new HashSet<>();
+    private int maxCategories;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        maxCategories = context.getConfiguration().getInt(
+                AbstractHadoopSalesMapper.IN_MAPPER_MAX_CATEGORIES, AbstractHadoopSalesMapper.DEFAULT_IN_MAPPER_MAX_CATEGORIES);
+    }
+
+    @Override
+    protected void map(LongWritable key,
+                       Text value,
+                       Context context) throws IOException, InterruptedException {
+
+        try {
+            if (!parser.parse(value.getBytes(), 0, value.getLength())) {
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            // malformed rows are logged by the aggregation job's mapper
+            return;
+        }
+
+        outKey.set(value.getBytes(), parser.categoryOffset(), parser.categoryLength());
+        if (seen.contains(outKey)) {
+            return;
+        }
+        if (seen.size() >= maxCategories) {
+            seen.clear();
+        }
+        seen.add(new Text(outKey));
+        context.write(outKey, NullWritable.get());
+    }
+}
@@ -0,0 +1,22 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Writes every category once. As the combiner it folds the duplicates of a spill; as the single
+ * reducer its sorted output is the {@link CategoryDictionaryFile}.
+ */
+public class HadoopSalesCategoryReducer extends Reducer<Text, NullWritable, Text, NullWritable> {
+
+    @Override
+    protected void reduce(Text key,
+                          Iterable<NullWritable> values,
+                          Context context) throws IOException, InterruptedException {
+
+        context.write(key, NullWritable.get());
+    }
+}
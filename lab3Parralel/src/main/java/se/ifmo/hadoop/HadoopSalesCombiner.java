@@ -0,0 +1,27 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Map-side combiner: folds all partial {@link SalesWritable}s of a category in a sorted spill into
+ * one, so each map task shuffles a single record per category. Works for any key type.
+ */
+public class HadoopSalesCombiner<K> extends Reducer<K, SalesWritable, K, SalesWritable> {
+
+    private final SalesWritable outValue = new SalesWritable();
+
+    @Override
+    protected void reduce(K key,
+                          Iterable<SalesWritable> values,
+                          Context context) throws IOException, InterruptedException {
+
+        outValue.set(0L, 0L);
+        for (SalesWritable v : values) {
+            outValue.addInPlace(v);
+        }
+
+        context.write(key, outValue);
+    }
+}
@@ -0,0 +1,42 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.Text;
+import se.ifmo.io.SalesCsvParser;
+import se.ifmo.model.CategoryDictionary;
+
+import java.io.IOException;
+
+/**
+ * Keys every row by the id its category has in the job's {@link CategoryDictionaryFile}, so the
+ * map-side sort compares one-byte VInts instead of category names.
+ */
+public class HadoopSalesIdMapper extends AbstractHadoopSalesMapper<CategoryIdWritable> {
+
+    private final CategoryIdWritable outKey = new CategoryIdWritable();
+
+    private CategoryDictionary dictionary;
+    private int knownCategories;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        dictionary = CategoryDictionaryFile.read(context.getConfiguration());
+        knownCategories = dictionary.size();
+    }
+
+    @Override
+    protected CategoryIdWritable key(Text line, SalesCsvParser row) throws IOException {
+        int id = row.categoryId(dictionary);
+        if (id >= knownCategories) {
+            // an id assigned here would mean nothing to the other tasks
+            throw new IOException("Category '" + dictionary.nameOf(id) + "' is missing from the category dictionary");
+        }
+        outKey.set(id);
+        return outKey;
+    }
+
+    @Override
+    protected CategoryIdWritable copyOf(CategoryIdWritable key) {
+        return new CategoryIdWritable(key.get());
+    }
+}
@@ -0,0 +1,30 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.Text;
+import se.ifmo.model.CategoryDictionary;
+
+import java.io.IOException;
+
+/**
+ * {@link HadoopSalesReducer} for {@link CategoryIdWritable} keys: translates each id back to its
+ * category name through the job's {@link CategoryDictionaryFile}, so the output is unchanged.
+ */
+public class HadoopSalesIdReducer extends AbstractHadoopSalesReducer<CategoryIdWritable> {
+
+    private final Text outKey = new Text();
+
+    private CategoryDictionary dictionary;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        dictionary = CategoryDictionaryFile.read(context.getConfiguration());
+    }
+
+    @Override
+    protected Text name(CategoryIdWritable key) {
+        byte[] name = dictionary.bytesOf(key.get());
+        outKey.set(name, 0, name.length);
+        return outKey;
+    }
+}
@@ -2,19 +2,30 @@ package se.ifmo.hadoop;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.TaskCounter;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.InputSampler;
+import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
 
 public final class HadoopSalesJob {
 
@@ -24,6 +35,17 @@ public final class HadoopSalesJob {
 
     private static final String OUTPUT_DIR = "output/hadoop-result";
 
+    private static final String CATEGORY_DICTIONARY_SUFFIX = "-categories";
+
+    private static final String TOTALS_SUFFIX = "-totals";
+
+    private static final String PARTITIONS_SUFFIX = "-partitions.lst";
+
+    /**
+     * Category totals sampled to pick the revenue ranges of the ranking reducers.
+     */
+    private static final int RANK_SAMPLES = 10_000;
+
     private HadoopSalesJob() {
     }
 
@@ -41,7 +63,7 @@ public final class HadoopSalesJob {
                 outputPath
         );
 
-        int exitCode = run(inputPath, outputPath);
+        int exitCode = run(inputPath, outputPath, HadoopSalesJobOptions.fromArgs(args));
         System.exit(exitCode);
     }
 
@@ -67,6 +89,34 @@ public final class HadoopSalesJob {
     }
 
     public static int run(String inputDir, String outputDir) throws Exception {
+        return run(inputDir, outputDir, HadoopSalesJobOptions.defaults());
+    }
+
+    /**
+     * Runs the aggregation alone, as before ranking existed: one job whose output is ordered by
+     * category, with no {@code -totals} sibling and no ranking job.
+     *
+     * @param useCombiner         fold map output per spill with {@link HadoopSalesCombiner}
+     * @param inMapperAggregation sum per category inside each map task and emit only the totals
+     */
+    public static int run(String inputDir,
+                          String outputDir,
+                          boolean useCombiner,
+                          boolean inMapperAggregation) throws Exception {
+        return run(inputDir, outputDir, HadoopSalesJobOptions.builder()
+                .combiner(useCombiner)
+                .inMapperAggregation(inMapperAggregation)
+                .rankByRevenue(false)
+                .build());
+    }
+
+    public static int run(String inputDir, String outputDir, HadoopSalesJobOptions options) throws Exception {
+        File input = new File(inputDir);
+        if (!input.exists() || !input.isDirectory()) {
+            throw new IllegalArgumentException("Input directory does not exist or is not a directory: " + inputDir);
+        }
+        File outDir = new File(outputDir);
+
         Configuration conf = new Configuration();
 
         // Локальный режим
@@ -74,37 +124,225 @@ public final class HadoopSalesJob {
 
         conf.set("fs.defaultFS", "file:///");
 
+        conf.setBoolean(HadoopSalesMapper.IN_MAPPER_AGGREGATION, options.inMapperAggregation());
+
+        // a dictionary built for this run only, deleted once the aggregation has read it
+        File dictionaryDir = null;
+        if (options.binaryCategoryKeys()) {
+            String dictionary = options.categoryDictionary();
+            if (dictionary == null) {
+                dictionaryDir = sibling(outDir, CATEGORY_DICTIONARY_SUFFIX);
+                if (!buildCategoryDictionary(conf, input, dictionaryDir, options)) {
+                    deleteRecursively(dictionaryDir);
+                    return 1;
+                }
+                dictionary = new File(dictionaryDir, "part-r-00000").toURI().toString();
+            }
+            conf.set(CategoryDictionaryFile.CATEGORY_DICTIONARY, dictionary);
+            LOG.info("Using category dictionary {}", dictionary);
+        }
+
+        // when ranking, the aggregation writes (total, category) pairs for the second job
+        File aggregationDir = options.rankByRevenue() ? sibling(outDir, TOTALS_SUFFIX) : outDir;
+        conf.setBoolean(AbstractHadoopSalesReducer.TOTALS_OUTPUT, options.rankByRevenue());
+
         Job job = Job.getInstance(conf, "SalesAnalysis-Hadoop");
         job.setJarByClass(HadoopSalesJob.class);
 
-        job.setMapperClass(HadoopSalesMapper.class);
-        job.setReducerClass(HadoopSalesReducer.class);
-
-        job.setMapOutputKeyClass(Text.class);
+        if (options.binaryCategoryKeys()) {
+            job.setMapperClass(HadoopSalesIdMapper.class);
+            job.setReducerClass(HadoopSalesIdReducer.class);
+            job.setMapOutputKeyClass(CategoryIdWritable.class);
+        } else {
+            job.setMapperClass(HadoopSalesMapper.class);
+            job.setReducerClass(HadoopSalesReducer.class);
+            job.setMapOutputKeyClass(Text.class);
+        }
+        if (options.combiner()) {
+            job.setCombinerClass(HadoopSalesCombiner.class);
+        }
         job.setMapOutputValueClass(SalesWritable.class);
+        job.setNumReduceTasks(options.reduceTasks());
 
-        job.setOutputKeyClass(Text.class);
-        job.setOutputValueClass(Text.class);
+        if (options.rankByRevenue()) {
+            job.setOutputKeyClass(SalesWritable.class);
+            job.setOutputValueClass(Text.class);
+            job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        } else {
+            job.setOutputKeyClass(Text.class);
+            job.setOutputValueClass(Text.class);
+            job.setOutputFormatClass(TextOutputFormat.class);
+        }
+
+        addSalesInput(job, input, options);
+
+        if (aggregationDir.exists()) {
+            deleteRecursively(aggregationDir);
+        }
+        FileOutputFormat.setOutputPath(job, new Path(aggregationDir.getAbsolutePath()));
+
+        LOG.info("Submitting Hadoop job: input={}, output={}, {}",
+                input.getAbsolutePath(), aggregationDir.getAbsolutePath(), options);
+
+        boolean succeeded = job.waitForCompletion(true);
+        if (dictionaryDir != null) {
+            deleteRecursively(dictionaryDir);
+        }
+        if (!succeeded) {
+            return 1;
+        }
+        logShuffleCounters(job);
+
+        if (!options.rankByRevenue()) {
+            return 0;
+        }
+        long categories = job.getCounters().findCounter(TaskCounter.REDUCE_OUTPUT_RECORDS).getValue();
+        return rankByRevenue(conf, aggregationDir, outDir, options.reduceTasks(), categories);
+    }
+
+    /**
+     * Extra pass over the input for {@link HadoopSalesJobOptions#binaryCategoryKeys}: lists every
+     * category once through a single reducer, whose sorted {@code part-r-00000} is the
+     * {@link CategoryDictionaryFile}. Costs about as much as reading the input for the aggregation.
+     */
+    private static boolean buildCategoryDictionary(Configuration conf,
+                                                   File input,
+                                                   File dictionaryDir,
+                                                   HadoopSalesJobOptions options) throws Exception {
+
+        Job job = Job.getInstance(conf, "SalesAnalysis-Hadoop-Categories");
+        job.setJarByClass(HadoopSalesJob.class);
 
-        job.setInputFormatClass(TextInputFormat.class);
+        job.setMapperClass(HadoopSalesCategoryMapper.class);
+        job.setCombinerClass(HadoopSalesCategoryReducer.class);
+        job.setReducerClass(HadoopSalesCategoryReducer.class);
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(NullWritable.class);
         job.setOutputFormatClass(TextOutputFormat.class);
+        // ids are line numbers, so all names go through one sorted file
+        job.setNumReduceTasks(1);
 
-        File input = new File(inputDir);
-        if (!input.exists() || !input.isDirectory()) {
-            throw new IllegalArgumentException("Input directory does not exist or is not a directory: " + inputDir);
+        addSalesInput(job, input, options);
+
+        if (dictionaryDir.exists()) {
+            deleteRecursively(dictionaryDir);
         }
+        FileOutputFormat.setOutputPath(job, new Path(dictionaryDir.getAbsolutePath()));
+
+        LOG.info("Submitting Hadoop category dictionary job: input={}, output={}",
+                input.getAbsolutePath(), dictionaryDir.getAbsolutePath());
+
+        return job.waitForCompletion(true);
+    }
+
+    private static void addSalesInput(Job job, File input, HadoopSalesJobOptions options) throws IOException {
+        if (options.maxSplitSizeBytes() > 0) {
+            job.setInputFormatClass(SalesCombineInputFormat.class);
+            FileInputFormat.setMaxInputSplitSize(job, options.maxSplitSizeBytes());
+        } else {
+            job.setInputFormatClass(TextInputFormat.class);
+        }
+
         FileInputFormat.addInputPath(job, new Path(input.getAbsolutePath()));
+    }
+
+    /**
+     * Second job: sorts the {@code (total, category)} pairs of the aggregation by revenue, descending.
+     * With several reducers a {@link TotalOrderPartitioner} gives each one a revenue range sampled
+     * from the totals, so {@code part-r-00000}, {@code part-r-00001}, ... together form one ranking.
+     * There are at most as many reducers as distinct sampled totals.
+     */
+    private static int rankByRevenue(Configuration conf,
+                                     File totalsDir,
+                                     File outDir,
+                                     int reduceTasks,
+                                     long categories) throws Exception {
+
+        Job job = Job.getInstance(conf, "SalesAnalysis-Hadoop-Rank");
+        job.setJarByClass(HadoopSalesJob.class);
+
+        job.setMapperClass(Mapper.class);
+        job.setReducerClass(HadoopSalesRankReducer.class);
+        job.setMapOutputKeyClass(SalesWritable.class);
+        job.setMapOutputValueClass(Text.class);
+        job.setSortComparatorClass(SalesWritable.DescendingComparator.class);
+
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(Text.class);
+
+        job.setInputFormatClass(SequenceFileInputFormat.class);
+        job.setOutputFormatClass(TextOutputFormat.class);
+
+        FileInputFormat.addInputPath(job, new Path(totalsDir.getAbsolutePath()));
 
-        File outDir = new File(outputDir);
         if (outDir.exists()) {
             deleteRecursively(outDir);
         }
         FileOutputFormat.setOutputPath(job, new Path(outDir.getAbsolutePath()));
 
-        LOG.info("Submitting Hadoop job: input={}, output={}", input.getAbsolutePath(), outDir.getAbsolutePath());
+        int rankReducers = 1;
+        File partitionFile = sibling(outDir, PARTITIONS_SUFFIX);
+        if (reduceTasks > 1 && categories > 1) {
+            SalesWritable[] splitCandidates = sampleDistinctTotals(job, categories, reduceTasks);
+            // TotalOrderPartitioner rejects equal split points, so every range needs its own total
+            rankReducers = Math.min(reduceTasks, splitCandidates.length);
+            if (rankReducers > 1) {
+                job.setNumReduceTasks(rankReducers);
+                // the partition file and the partitioner both order keys by the job's sort comparator
+                TotalOrderPartitioner.setPartitionFile(job.getConfiguration(), new Path(partitionFile.getAbsolutePath()));
+                InputSampler.Sampler<SalesWritable, Text> sampled = (inputFormat, sampledJob) -> splitCandidates;
+                InputSampler.writePartitionFile(job, sampled);
+                job.setPartitionerClass(TotalOrderPartitioner.class);
+            }
+        }
+        job.setNumReduceTasks(rankReducers);
+
+        LOG.info("Submitting Hadoop ranking job: input={}, output={}, categories={}, reducers={}",
+                totalsDir.getAbsolutePath(), outDir.getAbsolutePath(), categories, rankReducers);
 
-        boolean success = job.waitForCompletion(true);
-        return success ? 0 : 1;
+        if (!job.waitForCompletion(true)) {
+            return 1;
+        }
+        deleteRecursively(totalsDir);
+        if (partitionFile.exists()) {
+            deleteRecursively(partitionFile);
+        }
+        return 0;
+    }
+
+    /**
+     * Samples about {@link #RANK_SAMPLES} totals from the aggregation output and drops duplicates,
+     * which categories with equal revenue and quantity produce.
+     */
+    private static SalesWritable[] sampleDistinctTotals(Job job,
+                                                        long categories,
+                                                        int splitsSampled) throws IOException, InterruptedException {
+        double frequency = Math.min(1.0, (double) RANK_SAMPLES / categories);
+        // the sampler builds its K[] as an Object[], so it must not be read as SalesWritable[]
+        Object[] samples = new InputSampler.RandomSampler<SalesWritable, Text>(frequency, RANK_SAMPLES, splitsSampled)
+                .getSample(new SequenceFileInputFormat<>(), job);
+
+        Set<SalesWritable> distinct = new HashSet<>();
+        for (Object sample : samples) {
+            distinct.add((SalesWritable) sample);
+        }
+        return distinct.toArray(new SalesWritable[0]);
+    }
+
+    private static File sibling(File outDir, String suffix) {
+        return new File(outDir.getAbsoluteFile().getParentFile(), outDir.getName() + suffix);
+    }
+
+    private static void logShuffleCounters(Job job) throws IOException {
+        Counters counters = job.getCounters();
+        if (counters == null) {
+            return;
+        }
+        LOG.info("Map output records={}, combine output records={}, spilled records={}, materialized bytes={}",
+                counters.findCounter(TaskCounter.MAP_OUTPUT_RECORDS).getValue(),
+                counters.findCounter(TaskCounter.COMBINE_OUTPUT_RECORDS).getValue(),
+                counters.findCounter(TaskCounter.SPILLED_RECORDS).getValue(),
+                counters.findCounter(TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES).getValue());
     }
 
     private static void deleteRecursively(File file) {
@@ -0,0 +1,193 @@
+package se.ifmo.hadoop;
+
+import java.util.List;
+
+/**
+ * Tuning switches of {@link HadoopSalesJob}; the defaults aggregate with a combiner and one reducer,
+ * then rank the totals by revenue.
+ */
+public final class HadoopSalesJobOptions {
+
+    private static final String MAX_SPLIT_SIZE_OPTION = "--max-split-size=";
+    private static final String REDUCERS_OPTION = "--reducers=";
+    private static final String CATEGORY_DICTIONARY_OPTION = "--category-dictionary=";
+
+    private final boolean combiner;
+    private final boolean inMapperAggregation;
+    private final long maxSplitSizeBytes;
+    private final boolean binaryCategoryKeys;
+    private final String categoryDictionary;
+    private final int reduceTasks;
+    private final boolean rankByRevenue;
+
+    private HadoopSalesJobOptions(Builder builder) {
+        this.combiner = builder.combiner;
+        this.inMapperAggregation = builder.inMapperAggregation;
+        this.maxSplitSizeBytes = builder.maxSplitSizeBytes;
+        this.binaryCategoryKeys = builder.binaryCategoryKeys;
+        this.categoryDictionary = builder.categoryDictionary;
+        this.reduceTasks = builder.reduceTasks;
+        this.rankByRevenue = builder.rankByRevenue;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static HadoopSalesJobOptions defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Reads {@code --no-combiner}, {@code --in-mapper}, {@code --max-split-size=<bytes>},
+     * {@code --binary-keys}, {@code --category-dictionary=<uri>}, {@code --reducers=<count>} and
+     * {@code --no-rank} from the command line.
+     */
+    public static HadoopSalesJobOptions fromArgs(String[] args) {
+        List<String> options = List.of(args);
+        Builder builder = builder()
+                .combiner(!options.contains("--no-combiner"))
+                .inMapperAggregation(options.contains("--in-mapper"))
+                .binaryCategoryKeys(options.contains("--binary-keys"))
+                .rankByRevenue(!options.contains("--no-rank"));
+        for (String option : options) {
+            if (option.startsWith(MAX_SPLIT_SIZE_OPTION)) {
+                builder.maxSplitSize(Long.parseLong(option.substring(MAX_SPLIT_SIZE_OPTION.length())));
+            } else if (option.startsWith(REDUCERS_OPTION)) {
+                builder.reduceTasks(Integer.parseInt(option.substring(REDUCERS_OPTION.length())));
+            } else if (option.startsWith(CATEGORY_DICTIONARY_OPTION)) {
+                builder.categoryDictionary(option.substring(CATEGORY_DICTIONARY_OPTION.length()));
+            }
+        }
+        return builder.build();
+    }
+
+    public boolean combiner() {
+        return combiner;
+    }
+
+    public boolean inMapperAggregation() {
+        return inMapperAggregation;
+    }
+
+    public long maxSplitSizeBytes() {
+        return maxSplitSizeBytes;
+    }
+
+    public boolean binaryCategoryKeys() {
+        return binaryCategoryKeys;
+    }
+
+    /**
+     * URI of a prebuilt {@link CategoryDictionaryFile}, or {@code null} to build one per run.
+     */
+    public String categoryDictionary() {
+        return categoryDictionary;
+    }
+
+    public int reduceTasks() {
+        return reduceTasks;
+    }
+
+    public boolean rankByRevenue() {
+        return rankByRevenue;
+    }
+
+    @Override
+    public String toString() {
+        return "combiner=" + combiner +
+                ", inMapperAggregation=" + inMapperAggregation +
+                ", maxSplitSize=" + (maxSplitSizeBytes > 0 ? maxSplitSizeBytes : "per file") +
+                ", binaryCategoryKeys=" + binaryCategoryKeys +
+                (categoryDictionary != null ? ", categoryDictionary=" + categoryDictionary : "") +
+                ", reduceTasks=" + reduceTasks +
+                ", rankByRevenue=" + rankByRevenue;
+    }
+
+    public static final class Builder {
+
+        private boolean combiner = true;
+        private boolean inMapperAggregation;
+        private long maxSplitSizeBytes;
+        private boolean binaryCategoryKeys;
+        private String categoryDictionary;
+        private int reduceTasks = 1;
+        private boolean rankByRevenue = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Folds map output per spill with {@link HadoopSalesCombiner}.
+         */
+        public Builder combiner(boolean combiner) {
+            this.combiner = combiner;
+            return this;
+        }
+
+        /**
+         * Sums per category inside each map task and emits only the totals.
+         */
+        public Builder inMapperAggregation(boolean inMapperAggregation) {
+            this.inMapperAggregation = inMapperAggregation;
+            return this;
+        }
+
+        /**
+         * If positive, input is read with {@link SalesCombineInputFormat}: small files are packed
+         * together and no split exceeds this size; {@code 0} splits every file by
+         * {@code TextInputFormat}.
+         */
+        public Builder maxSplitSize(long maxSplitSizeBytes) {
+            if (maxSplitSizeBytes < 0) {
+                throw new IllegalArgumentException("maxSplitSizeBytes must be >= 0");
+            }
+            this.maxSplitSizeBytes = maxSplitSizeBytes;
+            return this;
+        }
+
+        /**
+         * Keys map output by {@link CategoryIdWritable} ids from a {@link CategoryDictionaryFile}
+         * instead of category names. Unless {@link #categoryDictionary} is given, the dictionary is
+         * built by an extra distinct-category job, which reads the whole input once more.
+         */
+        public Builder binaryCategoryKeys(boolean binaryCategoryKeys) {
+            this.binaryCategoryKeys = binaryCategoryKeys;
+            return this;
+        }
+
+        /**
+         * Uses the {@link CategoryDictionaryFile} at this URI for {@link #binaryCategoryKeys} instead of
+         * building one; it must list every category of the input.
+         */
+        public Builder categoryDictionary(String categoryDictionary) {
+            this.categoryDictionary = categoryDictionary;
+            return this;
+        }
+
+        /**
+         * Number of reducers of the aggregation and of the ranking stage.
+         */
+        public Builder reduceTasks(int reduceTasks) {
+            if (reduceTasks <= 0) {
+                throw new IllegalArgumentException("reduceTasks must be > 0");
+            }
+            this.reduceTasks = reduceTasks;
+            return this;
+        }
+
+        /**
+         * Sorts the category totals by revenue, descending, in a second job; with several reducers
+         * the {@code part-r-*} files are ordered among themselves too. Otherwise the output is
+         * ordered by category key within each reducer.
+         */
+        public Builder rankByRevenue(boolean rankByRevenue) {
+            this.rankByRevenue = rankByRevenue;
+            return this;
+        }
+
+        public HadoopSalesJobOptions build() {
+            return new HadoopSalesJobOptions(this);
+        }
+    }
+}
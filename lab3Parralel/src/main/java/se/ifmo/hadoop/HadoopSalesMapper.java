@@ -1,57 +1,23 @@
 package se.ifmo.hadoop;
 
-import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Mapper;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import se.ifmo.model.SalesRecord;
+import se.ifmo.io.SalesCsvParser;
 
-import java.io.IOException;
-import java.math.BigDecimal;
-
-public class HadoopSalesMapper extends Mapper<LongWritable, Text, Text, SalesWritable> {
-
-    private static final Logger logger = LoggerFactory.getLogger(HadoopSalesMapper.class);
+/**
+ * Keys every row by its category name as UTF-8 {@link Text}.
+ */
+public class HadoopSalesMapper extends AbstractHadoopSalesMapper<Text> {
 
     private final Text outKey = new Text();
-    private final SalesWritable outValue = new SalesWritable();
 
     @Override
-    protected void map(LongWritable key,
-                       Text value,
-                       Context context) throws IOException, InterruptedException {
-
-        String line = value.toString();
-        if (line == null) {
-            return;
-        }
-
-        String trimmed = line.trim();
-        if (trimmed.isEmpty()) {
-            return;
-        }
-
-        SalesRecord record;
-        try {
-            record = SalesRecord.fromCsvLine(trimmed);
-        } catch (IllegalArgumentException e) {
-            logger.warn("Failed to parse CSV line '{}': {}", trimmed, e.getMessage());
-            return;
-        }
-
-        if (record == null) {
-            return;
-        }
-
-        BigDecimal revenue = record.price()
-                .multiply(BigDecimal.valueOf(record.quantity()));
-        double revenueDouble = revenue.doubleValue();
-        long quantity = record.quantity();
-
-        outKey.set(record.category());
-        outValue.set(revenueDouble, quantity);
+    protected Text key(Text line, SalesCsvParser row) {
+        outKey.set(line.getBytes(), row.categoryOffset(), row.categoryLength());
+        return outKey;
+    }
 
-        context.write(outKey, outValue);
+    @Override
+    protected Text copyOf(Text key) {
+        return new Text(key);
     }
 }
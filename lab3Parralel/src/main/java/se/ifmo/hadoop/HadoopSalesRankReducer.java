@@ -0,0 +1,27 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Ranking stage reducer: receives category totals already sorted by revenue, descending, and writes
+ * them in that order as {@code category<TAB>revenue<TAB>quantity}. Categories with equal totals
+ * arrive grouped under one key.
+ */
+public class HadoopSalesRankReducer extends Reducer<SalesWritable, Text, Text, Text> {
+
+    private final Text outValue = new Text();
+
+    @Override
+    protected void reduce(SalesWritable key,
+                          Iterable<Text> values,
+                          Context context) throws IOException, InterruptedException {
+
+        outValue.set(AbstractHadoopSalesReducer.format(key));
+        for (Text category : values) {
+            context.write(category, outValue);
+        }
+    }
+}
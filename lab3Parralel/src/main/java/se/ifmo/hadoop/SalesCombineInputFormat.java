@@ -0,0 +1,27 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+
+import java.io.IOException;
+
+/**
+ * Input format for the sales CSV files that packs many small files into one split and cuts large
+ * files into splits of at most {@code mapreduce.input.fileinputformat.split.maxsize} bytes (set it
+ * with {@code FileInputFormat.setMaxInputSplitSize}), so the number of map tasks follows the data
+ * volume rather than the number of files.
+ */
+public class SalesCombineInputFormat extends CombineFileInputFormat<LongWritable, Text> {
+
+    @Override
+    public RecordReader<LongWritable, Text> createRecordReader(InputSplit split,
+                                                               TaskAttemptContext context) throws IOException {
+        return new CombineFileRecordReader<>((CombineFileSplit) split, context, SalesLineRecordReader.class);
+    }
+}
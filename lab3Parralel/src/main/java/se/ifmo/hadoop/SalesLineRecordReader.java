@@ -0,0 +1,85 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+import se.ifmo.io.SalesCsvParser;
+
+import java.io.IOException;
+
+/**
+ * Reads the lines of one file chunk of a {@link CombineFileSplit} and drops the header row at the
+ * start of the file, recognised by {@link SalesCsvParser}, so it never reaches the mapper.
+ */
+public class SalesLineRecordReader extends RecordReader<LongWritable, Text> {
+
+    private final FileSplit fileSplit;
+
+    private final LineRecordReader lineReader = new LineRecordReader();
+
+    private final SalesCsvParser parser = new SalesCsvParser();
+
+    /**
+     * Constructor signature required by {@code CombineFileRecordReader}.
+     */
+    public SalesLineRecordReader(CombineFileSplit split,
+                                 TaskAttemptContext context,
+                                 Integer index) throws IOException {
+        this.fileSplit = new FileSplit(
+                split.getPath(index),
+                split.getOffset(index),
+                split.getLength(index),
+                split.getLocations()
+        );
+    }
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+        // the combined split is passed here; this reader only covers its own chunk
+        lineReader.initialize(fileSplit, context);
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException {
+        while (lineReader.nextKeyValue()) {
+            if (lineReader.getCurrentKey().get() != 0 || !isHeader(lineReader.getCurrentValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public LongWritable getCurrentKey() {
+        return lineReader.getCurrentKey();
+    }
+
+    @Override
+    public Text getCurrentValue() {
+        return lineReader.getCurrentValue();
+    }
+
+    @Override
+    public float getProgress() throws IOException {
+        return lineReader.getProgress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lineReader.close();
+    }
+
+    private boolean isHeader(Text line) {
+        try {
+            return !parser.parse(line.getBytes(), 0, line.getLength());
+        } catch (IllegalArgumentException e) {
+            // malformed first row: leave it to the mapper, which logs it
+            return false;
+        }
+    }
+}
@@ -1,61 +1,138 @@
 package se.ifmo.hadoop;
 
-import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import se.ifmo.model.FixedPointRevenue;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.Objects;
 
-public class SalesWritable implements Writable {
+/**
+ * Revenue and quantity of a category in the Hadoop path. Revenue is exact: it is kept and
+ * serialized as variable-length {@link FixedPointRevenue} units, so a typical record takes a few
+ * bytes, and only a revenue that does not fit a {@code long} is written as a decimal string
+ * behind the {@link FixedPointRevenue#NOT_REPRESENTABLE} marker.
+ *
+ * <p>Records order by revenue, then quantity; {@link Comparator} does so on the serialized bytes and
+ * {@link DescendingComparator} in reverse.
+ */
+public class SalesWritable implements WritableComparable<SalesWritable> {
 
-    private double totalRevenue;
+    static {
+        WritableComparator.define(SalesWritable.class, new Comparator());
+    }
+
+    private long revenueUnits;
+    private BigDecimal revenueDecimal;
     private long totalQuantity;
 
     public SalesWritable() {
     }
 
-    public SalesWritable(double totalRevenue, long totalQuantity) {
-        this.totalRevenue = totalRevenue;
-        this.totalQuantity = totalQuantity;
+    public SalesWritable(long revenueUnits, long totalQuantity) {
+        set(revenueUnits, totalQuantity);
+    }
+
+    public BigDecimal getTotalRevenue() {
+        return revenueDecimal != null ? revenueDecimal : FixedPointRevenue.toDecimal(revenueUnits);
     }
 
-    public double getTotalRevenue() {
-        return totalRevenue;
+    public boolean isFixedPoint() {
+        return revenueDecimal == null;
+    }
+
+    public long getRevenueUnits() {
+        if (revenueDecimal != null) {
+            throw new IllegalStateException("Revenue does not fit fixed-point units: " + revenueDecimal);
+        }
+        return revenueUnits;
     }
 
     public long getTotalQuantity() {
         return totalQuantity;
     }
 
-    public void set(double totalRevenue, long totalQuantity) {
-        this.totalRevenue = totalRevenue;
+    public void set(long revenueUnits, long totalQuantity) {
+        if (revenueUnits == FixedPointRevenue.NOT_REPRESENTABLE) {
+            throw new IllegalArgumentException("revenueUnits must be representable");
+        }
+        this.revenueUnits = revenueUnits;
+        this.revenueDecimal = null;
+        this.totalQuantity = totalQuantity;
+    }
+
+    public void set(BigDecimal totalRevenue, long totalQuantity) {
+        Objects.requireNonNull(totalRevenue, "totalRevenue must not be null");
+        long units = FixedPointRevenue.toUnits(totalRevenue);
+        this.revenueUnits = units == FixedPointRevenue.NOT_REPRESENTABLE ? 0L : units;
+        this.revenueDecimal = units == FixedPointRevenue.NOT_REPRESENTABLE ? totalRevenue : null;
         this.totalQuantity = totalQuantity;
     }
 
+    public void set(SalesWritable other) {
+        this.revenueUnits = other.revenueUnits;
+        this.revenueDecimal = other.revenueDecimal;
+        this.totalQuantity = other.totalQuantity;
+    }
+
     public void addInPlace(SalesWritable other) {
         if (other == null) {
             return;
         }
-        this.totalRevenue += other.totalRevenue;
         this.totalQuantity += other.totalQuantity;
+        if (this.revenueDecimal == null && other.revenueDecimal == null) {
+            long sum = FixedPointRevenue.add(this.revenueUnits, other.revenueUnits);
+            if (sum != FixedPointRevenue.NOT_REPRESENTABLE) {
+                this.revenueUnits = sum;
+                return;
+            }
+        }
+        BigDecimal sum = this.getTotalRevenue().add(other.getTotalRevenue());
+        long units = FixedPointRevenue.toUnits(sum);
+        this.revenueUnits = units == FixedPointRevenue.NOT_REPRESENTABLE ? 0L : units;
+        this.revenueDecimal = units == FixedPointRevenue.NOT_REPRESENTABLE ? sum : null;
     }
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.writeDouble(totalRevenue);
-        out.writeLong(totalQuantity);
+        if (revenueDecimal == null) {
+            WritableUtils.writeVLong(out, revenueUnits);
+        } else {
+            WritableUtils.writeVLong(out, FixedPointRevenue.NOT_REPRESENTABLE);
+            out.writeUTF(revenueDecimal.toString());
+        }
+        WritableUtils.writeVLong(out, totalQuantity);
     }
 
     @Override
     public void readFields(DataInput in) throws IOException {
-        this.totalRevenue = in.readDouble();
-        this.totalQuantity = in.readLong();
+        long units = WritableUtils.readVLong(in);
+        if (units == FixedPointRevenue.NOT_REPRESENTABLE) {
+            this.revenueUnits = 0L;
+            this.revenueDecimal = new BigDecimal(in.readUTF());
+        } else {
+            this.revenueUnits = units;
+            this.revenueDecimal = null;
+        }
+        this.totalQuantity = WritableUtils.readVLong(in);
+    }
+
+    @Override
+    public int compareTo(SalesWritable other) {
+        int byRevenue = revenueDecimal == null && other.revenueDecimal == null
+                ? Long.compare(revenueUnits, other.revenueUnits)
+                : getTotalRevenue().compareTo(other.getTotalRevenue());
+        return byRevenue != 0 ? byRevenue : Long.compare(totalQuantity, other.totalQuantity);
     }
 
     @Override
     public String toString() {
-        return totalRevenue + "\t" + totalQuantity;
+        return getTotalRevenue().toPlainString() + "\t" + totalQuantity;
     }
 
     @Override
@@ -63,12 +140,75 @@ public class SalesWritable implements Writable {
         if (this == o) return true;
         if (!(o instanceof SalesWritable)) return false;
         SalesWritable that = (SalesWritable) o;
-        return Double.compare(that.totalRevenue, totalRevenue) == 0 &&
-                totalQuantity == that.totalQuantity;
+        return compareTo(that) == 0;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(totalRevenue, totalQuantity);
+        if (revenueDecimal == null) {
+            return Objects.hash(revenueUnits, totalQuantity);
+        }
+        return Objects.hash(revenueDecimal.stripTrailingZeros(), totalQuantity);
+    }
+
+    /**
+     * Compares serialized records without deserializing them; only records carrying a decimal
+     * revenue are read back and compared with {@link SalesWritable#compareTo}.
+     */
+    public static class Comparator extends WritableComparator {
+
+        public Comparator() {
+            super(SalesWritable.class, true);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                long units1 = readVLong(b1, s1);
+                long units2 = readVLong(b2, s2);
+                if (units1 == FixedPointRevenue.NOT_REPRESENTABLE || units2 == FixedPointRevenue.NOT_REPRESENTABLE) {
+                    return compareDeserialized(b1, s1, l1, b2, s2, l2);
+                }
+                if (units1 != units2) {
+                    return Long.compare(units1, units2);
+                }
+                long quantity1 = readVLong(b1, s1 + WritableUtils.decodeVIntSize(b1[s1]));
+                long quantity2 = readVLong(b2, s2 + WritableUtils.decodeVIntSize(b2[s2]));
+                return Long.compare(quantity1, quantity2);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Malformed SalesWritable record", e);
+            }
+        }
+
+        // not super.compare: it would dispatch back to an overridden compare(WritableComparable, ...)
+        private static int compareDeserialized(byte[] b1, int s1, int l1,
+                                               byte[] b2, int s2, int l2) throws IOException {
+            DataInputBuffer in = new DataInputBuffer();
+            SalesWritable first = new SalesWritable();
+            SalesWritable second = new SalesWritable();
+            in.reset(b1, s1, l1);
+            first.readFields(in);
+            in.reset(b2, s2, l2);
+            second.readFields(in);
+            return first.compareTo(second);
+        }
+    }
+
+    /**
+     * Orders records by revenue, then quantity, descending, both serialized and deserialized; the
+     * sort order of the ranking stage of {@link HadoopSalesJob}.
+     */
+    public static class DescendingComparator extends Comparator {
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            return super.compare(b2, s2, l2, b1, s1, l1);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public int compare(WritableComparable a, WritableComparable b) {
+            return super.compare(b, a);
+        }
     }
 }
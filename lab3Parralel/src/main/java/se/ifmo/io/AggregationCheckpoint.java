@@ -0,0 +1,179 @@
+package se.ifmo.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.ifmo.mapreduce.sales.CategoryStatsSerializer;
+import se.ifmo.model.CategoryStats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Per-file aggregated {@link CategoryStats} persisted between runs, keyed by file path and
+ * stamped with the file's size and modification time, so unchanged files need not be read again.
+ *
+ * <p>Binary layout: magic, version, file count, then for every file its path, size, mtime and
+ * category count followed by the categories, each encoded by {@link CategoryStatsSerializer}.
+ */
+public final class AggregationCheckpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(AggregationCheckpoint.class);
+
+    private static final int MAGIC = 0x53414C43; // "SALC"
+    private static final int VERSION = 1;
+
+    private static final CategoryStatsSerializer STATS_SERIALIZER = new CategoryStatsSerializer();
+
+    private final Map<String, FileState> files;
+
+    private AggregationCheckpoint(Map<String, FileState> files) {
+        this.files = files;
+    }
+
+    public static AggregationCheckpoint empty() {
+        return new AggregationCheckpoint(new HashMap<>());
+    }
+
+    /**
+     * Loads a checkpoint, or returns an empty one if the file does not exist.
+     *
+     * @throws IOException if the file exists but is not a valid checkpoint
+     */
+    public static AggregationCheckpoint load(Path path) throws IOException {
+        Objects.requireNonNull(path, "path must not be null");
+        if (!Files.exists(path)) {
+            logger.info("No checkpoint at '{}', starting from scratch", path);
+            return empty();
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a sales checkpoint: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " in " + path);
+            }
+
+            int filesCount = in.readInt();
+            Map<String, FileState> files = new HashMap<>(filesCount * 2);
+            for (int i = 0; i < filesCount; i++) {
+                String file = in.readUTF();
+                long size = in.readLong();
+                long lastModifiedMillis = in.readLong();
+
+                int categoriesCount = in.readInt();
+                Map<String, CategoryStats> stats = new HashMap<>(categoriesCount * 2);
+                for (int j = 0; j < categoriesCount; j++) {
+                    stats.put(in.readUTF(), STATS_SERIALIZER.read(in));
+                }
+                files.put(file, new FileState(size, lastModifiedMillis, stats));
+            }
+
+            logger.info("Loaded checkpoint with {} files from '{}'", files.size(), path);
+            return new AggregationCheckpoint(files);
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file next to {@code path} and moves it into place,
+     * so a crash never leaves a truncated checkpoint behind.
+     */
+    public void save(Path path) throws IOException {
+        Objects.requireNonNull(path, "path must not be null");
+        Path absolute = path.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(files.size());
+                for (Map.Entry<String, FileState> file : files.entrySet()) {
+                    FileState state = file.getValue();
+                    out.writeUTF(file.getKey());
+                    out.writeLong(state.size());
+                    out.writeLong(state.lastModifiedMillis());
+                    out.writeInt(state.stats().size());
+                    for (Map.Entry<String, CategoryStats> entry : state.stats().entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        STATS_SERIALIZER.write(out, entry.getValue());
+                    }
+                }
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        logger.info("Saved checkpoint with {} files to '{}'", files.size(), absolute);
+    }
+
+    /**
+     * Returns the stored stats of the file if it has not changed since it was aggregated.
+     */
+    public Map<String, CategoryStats> lookup(Path file) throws IOException {
+        FileState state = files.get(key(file));
+        if (state == null
+                || state.size() != Files.size(file)
+                || state.lastModifiedMillis() != Files.getLastModifiedTime(file).toMillis()) {
+            return null;
+        }
+        return state.stats();
+    }
+
+    /**
+     * Records the stats of a file with the size and modification time it had before it was read,
+     * so a file that changes while being aggregated is picked up again by the next run.
+     */
+    public void update(Path file, long size, long lastModifiedMillis, Map<String, CategoryStats> stats) {
+        files.put(key(file), new FileState(size, lastModifiedMillis, Collections.unmodifiableMap(new HashMap<>(stats))));
+    }
+
+    /**
+     * Drops the files that are no longer part of the input.
+     */
+    public void retainAll(Collection<Path> inputFiles) {
+        Set<String> keys = new HashSet<>();
+        for (Path file : inputFiles) {
+            keys.add(key(file));
+        }
+        files.keySet().retainAll(keys);
+    }
+
+    public int filesCount() {
+        return files.size();
+    }
+
+    /**
+     * Sums the stats of all checkpointed files.
+     */
+    public Map<String, CategoryStats> totals() {
+        Map<String, CategoryStats> totals = new HashMap<>();
+        for (FileState state : files.values()) {
+            state.stats().forEach((category, stats) -> totals.merge(category, stats, CategoryStats::add));
+        }
+        return totals;
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private record FileState(long size, long lastModifiedMillis, Map<String, CategoryStats> stats) {
+    }
+}
@@ -0,0 +1,10 @@
+package se.ifmo.io;
+
+/**
+ * Receives every data row of a split while the parser is positioned on it.
+ */
+@FunctionalInterface
+public interface CsvRowHandler {
+
+    void onRow(SalesCsvParser row);
+}
@@ -0,0 +1,25 @@
+package se.ifmo.io;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Byte range {@code [start, start + length)} of a CSV file that begins at a line start
+ * and ends right after a line terminator (or at the end of the file).
+ */
+public record CsvSplit(Path file, long start, long length) {
+
+    public CsvSplit {
+        Objects.requireNonNull(file, "file must not be null");
+        if (start < 0) {
+            throw new IllegalArgumentException("start must be non-negative");
+        }
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("length must be in [0, Integer.MAX_VALUE]");
+        }
+    }
+
+    public long end() {
+        return start + length;
+    }
+}
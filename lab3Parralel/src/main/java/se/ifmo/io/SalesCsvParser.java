@@ -0,0 +1,314 @@
+package se.ifmo.io;
+
+import se.ifmo.model.ByteRanges;
+import se.ifmo.model.CategoryDictionary;
+import se.ifmo.model.SalesRecord;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable, single-threaded parser for {@code transaction_id,product_id,category,price,quantity}
+ * rows that scans raw UTF-8 bytes in place. Numeric columns are parsed straight from the buffer,
+ * the price is kept as a fixed-point {@code unscaled / 10^scale} pair and category names are
+ * served from a small per-parser cache, so a well-formed row allocates nothing.
+ */
+public final class SalesCsvParser {
+
+    private static final byte DELIMITER = ',';
+
+    private static final byte[] HEADER_PREFIX = "transaction_id".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int MAX_FIXED_POINT_DIGITS = 18;
+
+    private static final int CATEGORY_CACHE_SIZE = 64;
+
+    private byte[] wrappedArray;
+    private ByteBuffer wrappedBuffer;
+
+    private ByteBuffer source;
+    private int lineStart;
+    private int lineEnd;
+
+    private long transactionId;
+    private long productId;
+    private int categoryOffset;
+    private int categoryLength;
+    private long priceUnscaled;
+    private int priceScale;
+    private BigDecimal priceDecimal;
+    private int quantity;
+
+    private final byte[][] cachedCategoryBytes = new byte[CATEGORY_CACHE_SIZE][];
+    private final String[] cachedCategoryNames = new String[CATEGORY_CACHE_SIZE];
+
+    public boolean parse(byte[] bytes, int from, int to) {
+        if (bytes != wrappedArray) {
+            wrappedArray = bytes;
+            wrappedBuffer = ByteBuffer.wrap(bytes);
+        }
+        return parse(wrappedBuffer, from, to);
+    }
+
+    /**
+     * Parses the row stored in {@code [from, to)} of the buffer.
+     *
+     * @return {@code true} if a data row was parsed, {@code false} for blank lines and the header
+     * @throws IllegalArgumentException if the row is malformed
+     */
+    public boolean parse(ByteBuffer buffer, int from, int to) {
+        source = buffer;
+
+        int start = skipBlanks(from, to);
+        int end = trimEnd(start, to);
+        lineStart = start;
+        lineEnd = end;
+
+        if (start >= end || isHeader(start, end)) {
+            return false;
+        }
+
+        int fieldEnd = nextDelimiter(start, end);
+        transactionId = parseLong(start, fieldEnd, "transaction_id");
+
+        int fieldStart = fieldEnd + 1;
+        fieldEnd = nextDelimiter(fieldStart, end);
+        productId = parseLong(fieldStart, fieldEnd, "product_id");
+
+        fieldStart = fieldEnd + 1;
+        fieldEnd = nextDelimiter(fieldStart, end);
+        categoryOffset = skipBlanks(fieldStart, fieldEnd);
+        categoryLength = trimEnd(categoryOffset, fieldEnd) - categoryOffset;
+        if (categoryLength == 0) {
+            throw new IllegalArgumentException("Category column is empty for line: '" + lineText() + "'");
+        }
+
+        fieldStart = fieldEnd + 1;
+        fieldEnd = nextDelimiter(fieldStart, end);
+        parsePrice(fieldStart, fieldEnd);
+
+        fieldStart = fieldEnd + 1;
+        fieldEnd = indexOf(DELIMITER, fieldStart, end);
+        long parsedQuantity = parseLong(fieldStart, fieldEnd < 0 ? end : fieldEnd, "quantity");
+        if (parsedQuantity < 0 || parsedQuantity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Quantity out of range in line: '" + lineText() + "'");
+        }
+        quantity = (int) parsedQuantity;
+
+        return true;
+    }
+
+    public long transactionId() {
+        return transactionId;
+    }
+
+    public long productId() {
+        return productId;
+    }
+
+    public int categoryOffset() {
+        return categoryOffset;
+    }
+
+    public int categoryLength() {
+        return categoryLength;
+    }
+
+    public String category() {
+        int hash = ByteRanges.hash(source, categoryOffset, categoryLength);
+        int slot = hash & (CATEGORY_CACHE_SIZE - 1);
+
+        byte[] cached = cachedCategoryBytes[slot];
+        if (cached != null && ByteRanges.matches(cached, source, categoryOffset, categoryLength)) {
+            return cachedCategoryNames[slot];
+        }
+
+        byte[] bytes = new byte[categoryLength];
+        source.get(categoryOffset, bytes);
+        String name = new String(bytes, StandardCharsets.UTF_8);
+        cachedCategoryBytes[slot] = bytes;
+        cachedCategoryNames[slot] = name;
+        return name;
+    }
+
+    /**
+     * Resolves the category straight from the row bytes, without decoding a {@code String}.
+     */
+    public int categoryId(CategoryDictionary dictionary) {
+        return dictionary.idOf(source, categoryOffset, categoryLength);
+    }
+
+    /**
+     * Whether the price fits the fixed-point representation; if not, only {@link #price()} is valid.
+     */
+    public boolean hasFixedPointPrice() {
+        return priceDecimal == null;
+    }
+
+    public long priceUnscaled() {
+        return priceUnscaled;
+    }
+
+    public int priceScale() {
+        return priceScale;
+    }
+
+    public BigDecimal price() {
+        return priceDecimal != null ? priceDecimal : BigDecimal.valueOf(priceUnscaled, priceScale);
+    }
+
+    public int quantity() {
+        return quantity;
+    }
+
+    public SalesRecord toRecord() {
+        return new SalesRecord(transactionId, productId, category(), price(), quantity);
+    }
+
+    public String lineText() {
+        return decode(lineStart, lineEnd);
+    }
+
+    private boolean isHeader(int start, int end) {
+        if (end - start < HEADER_PREFIX.length) {
+            return false;
+        }
+        for (int i = 0; i < HEADER_PREFIX.length; i++) {
+            int b = source.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != HEADER_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int nextDelimiter(int from, int end) {
+        int index = indexOf(DELIMITER, from, end);
+        if (index < 0) {
+            throw new IllegalArgumentException("Expected 5 columns for line: '" + lineText() + "'");
+        }
+        return index;
+    }
+
+    private int indexOf(byte value, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (source.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long parseLong(int from, int to, String column) {
+        int start = skipBlanks(from, to);
+        int end = trimEnd(start, to);
+
+        boolean negative = false;
+        if (start < end && (source.get(start) == '-' || source.get(start) == '+')) {
+            negative = source.get(start) == '-';
+            start++;
+        }
+        if (start >= end) {
+            throw numberError(column);
+        }
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = source.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw numberError(column);
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw numberError(column);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private void parsePrice(int from, int to) {
+        int start = skipBlanks(from, to);
+        int end = trimEnd(start, to);
+
+        priceDecimal = null;
+
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (source.get(pos) == '-' || source.get(pos) == '+')) {
+            negative = source.get(pos) == '-';
+            pos++;
+        }
+
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; pos < end; pos++) {
+            byte b = source.get(pos);
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || ++digits > MAX_FIXED_POINT_DIGITS) {
+                parsePriceFallback(start, end);
+                return;
+            }
+            unscaled = unscaled * 10 + digit;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (digits == 0) {
+            throw numberError("price");
+        }
+
+        priceUnscaled = negative ? -unscaled : unscaled;
+        priceScale = Math.max(scale, 0);
+    }
+
+    private void parsePriceFallback(int start, int end) {
+        try {
+            priceDecimal = new BigDecimal(decode(start, end));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Failed to parse numeric value in line: '" + lineText() + "'", e
+            );
+        }
+    }
+
+    private IllegalArgumentException numberError(String column) {
+        return new IllegalArgumentException(
+                "Failed to parse numeric " + column + " in line: '" + lineText() + "'"
+        );
+    }
+
+    private int skipBlanks(int from, int to) {
+        int i = from;
+        while (i < to && isBlank(source.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private int trimEnd(int from, int to) {
+        int i = to;
+        while (i > from && isBlank(source.get(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private String decode(int from, int to) {
+        byte[] bytes = new byte[Math.max(0, to - from)];
+        source.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -2,25 +2,43 @@ package se.ifmo.io;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.ifmo.model.CategoryDictionary;
+import se.ifmo.model.FixedPointRevenue;
+import se.ifmo.model.SalesColumnStore;
 import se.ifmo.model.SalesRecord;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UncheckedIOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public final class SalesCsvReader {
 
     private static final Logger logger = LoggerFactory.getLogger(SalesCsvReader.class);
 
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final int BOUNDARY_WINDOW_SIZE = 8 * 1024;
+
+    private static final long MIN_SPLIT_SIZE = 64 * 1024;
+
+    private static final long MAX_SPLIT_SIZE = Integer.MAX_VALUE - BOUNDARY_WINDOW_SIZE;
+
+    private static final int SPLITS_PER_THREAD = 4;
+
     private SalesCsvReader() {
     }
 
@@ -29,6 +47,112 @@ public final class SalesCsvReader {
     }
 
     public static List<SalesRecord> readAllFromDirectory(Path directory) throws IOException {
+        List<SalesRecord> result = new ArrayList<>();
+
+        for (Path path : listCsvFiles(directory)) {
+            logger.info("Reading CSV file: {}", path);
+            readFromFile(path, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Memory-maps the CSV files of the directory, cuts them into newline-aligned splits and
+     * parses the splits on {@code threadsCount} threads. Records keep the file/split order.
+     */
+    public static List<SalesRecord> readAllFromDirectory(Path directory, int threadsCount) throws IOException {
+        if (threadsCount <= 0) {
+            throw new IllegalArgumentException("threadsCount must be > 0");
+        }
+
+        List<SalesRecord> result = new ArrayList<>();
+        for (List<SalesRecord> part : readSplitsInParallel(directory, threadsCount, split -> {
+            List<SalesRecord> records = new ArrayList<>();
+            readSplit(split, row -> records.add(row.toRecord()));
+            return records;
+        })) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #readAllFromDirectory(Path, int)}, but stores the rows off-heap in columnar form
+     * with dictionary-encoded categories and fixed-point prices instead of creating a record per row.
+     */
+    public static SalesColumnStore readColumnarFromDirectory(Path directory, int threadsCount) throws IOException {
+        if (threadsCount <= 0) {
+            throw new IllegalArgumentException("threadsCount must be > 0");
+        }
+
+        CategoryDictionary dictionary = new CategoryDictionary();
+        List<SalesColumnStore.Chunk> chunks = new ArrayList<>();
+        for (List<SalesColumnStore.Chunk> part : readSplitsInParallel(directory, threadsCount, split -> {
+            SalesColumnStore.Appender appender = new SalesColumnStore.Appender();
+            readSplit(split, row -> {
+                long priceUnits = row.hasFixedPointPrice()
+                        ? FixedPointRevenue.toUnits(row.priceUnscaled(), row.priceScale())
+                        : FixedPointRevenue.NOT_REPRESENTABLE;
+                appender.add(
+                        row.transactionId(),
+                        row.productId(),
+                        row.categoryId(dictionary),
+                        priceUnits,
+                        priceUnits == FixedPointRevenue.NOT_REPRESENTABLE ? row.price() : null,
+                        row.quantity()
+                );
+            });
+            return appender.finish();
+        })) {
+            chunks.addAll(part);
+        }
+
+        SalesColumnStore store = new SalesColumnStore(dictionary, chunks);
+        logger.info("Loaded {} rows into {} columnar chunks, {} bytes off-heap, {} categories",
+                store.rowsCount(), chunks.size(), store.offHeapBytes(), dictionary.size());
+        return store;
+    }
+
+    /**
+     * Cuts the CSV files of the directory into splits and reads them on {@code threadsCount}
+     * threads, returning the per-split results in file/split order.
+     */
+    private static <T> List<T> readSplitsInParallel(Path directory,
+                                                    int threadsCount,
+                                                    SplitReader<T> reader) throws IOException {
+
+        List<Path> files = listCsvFiles(directory);
+        List<CsvSplit> splits = createSplits(files, splitSizeFor(files, threadsCount * SPLITS_PER_THREAD));
+
+        logger.info("Reading {} CSV files as {} splits with threadsCount={}", files.size(), splits.size(), threadsCount);
+
+        List<Future<T>> parts = new ArrayList<>(splits.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        try {
+            for (CsvSplit split : splits) {
+                parts.add(executor.submit(() -> reader.read(split)));
+            }
+
+            List<T> result = new ArrayList<>(parts.size());
+            for (Future<T> part : parts) {
+                result.add(part.get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading CSV splits", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to read CSV split", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static List<Path> listCsvFiles(Path directory) throws IOException {
         if (!Files.exists(directory)) {
             throw new IOException("Directory does not exist: " + directory);
         }
@@ -36,25 +160,108 @@ public final class SalesCsvReader {
             throw new IOException("Path is not a directory: " + directory);
         }
 
-        List<SalesRecord> result = new ArrayList<>();
-
         try (Stream<Path> files = Files.list(directory)) {
-            files
+            return files
                     .filter(path -> Files.isRegularFile(path))
                     .filter(path -> path.getFileName().toString().toLowerCase().endsWith(".csv"))
-                    .forEach(path -> {
-                        try {
-                            logger.info("Reading CSV file: {}", path);
-                            readFromFile(path, result);
-                        } catch (IOException e) {
-                            throw new UncheckedIOException(e);
-                        }
-                    });
-        } catch (UncheckedIOException e) {
-            throw e.getCause();
+                    .sorted()
+                    .collect(Collectors.toList());
         }
+    }
 
-        return result;
+    /**
+     * Returns the split size that cuts the given files into roughly {@code splitsCount} parts.
+     */
+    public static long splitSizeFor(List<Path> files, int splitsCount) throws IOException {
+        if (splitsCount <= 0) {
+            throw new IllegalArgumentException("splitsCount must be > 0");
+        }
+        long totalBytes = 0;
+        for (Path file : files) {
+            totalBytes += Files.size(file);
+        }
+        return Math.max(MIN_SPLIT_SIZE, (totalBytes + splitsCount - 1) / splitsCount);
+    }
+
+    public static List<CsvSplit> createSplits(List<Path> files, long targetSplitSize) throws IOException {
+        List<CsvSplit> splits = new ArrayList<>();
+        for (Path file : files) {
+            splits.addAll(createSplits(file, targetSplitSize));
+        }
+        return splits;
+    }
+
+    /**
+     * Cuts the file into splits of about {@code targetSplitSize} bytes, moving every boundary
+     * forward to the next line start so that no row is shared between two splits.
+     */
+    public static List<CsvSplit> createSplits(Path file, long targetSplitSize) throws IOException {
+        if (targetSplitSize <= 0) {
+            throw new IllegalArgumentException("targetSplitSize must be > 0");
+        }
+        long splitSize = Math.min(targetSplitSize, MAX_SPLIT_SIZE);
+
+        List<CsvSplit> splits = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer window = ByteBuffer.allocate(BOUNDARY_WINDOW_SIZE);
+
+            long start = 0;
+            while (start < size) {
+                long end = start + splitSize >= size
+                        ? size
+                        : nextLineStart(channel, start + splitSize, size, window);
+                splits.add(new CsvSplit(file, start, end - start));
+                start = end;
+            }
+        }
+        return splits;
+    }
+
+    /**
+     * Memory-maps the split and passes every parsed data row to the handler. Splits smaller than
+     * {@code MIN_SPLIT_SIZE} are read into a heap buffer instead, so tiny splits do not pile up
+     * mappings. Blank lines and the header are skipped; malformed rows are logged and skipped.
+     */
+    public static void readSplit(CsvSplit split, CsvRowHandler handler) throws IOException {
+        if (split.length() == 0) {
+            return;
+        }
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(split.file(), StandardOpenOption.READ)) {
+            buffer = split.length() < MIN_SPLIT_SIZE
+                    ? readFully(channel, split)
+                    : channel.map(FileChannel.MapMode.READ_ONLY, split.start(), split.length());
+        }
+
+        parseRows(buffer, handler);
+    }
+
+    /**
+     * Passes every data row in {@code [0, limit)} of a buffer holding whole CSV lines to the handler,
+     * with the same skipping rules as {@link #readSplit}.
+     */
+    public static void parseRows(ByteBuffer buffer, CsvRowHandler handler) {
+        parseRows(buffer, new SalesCsvParser(), handler);
+    }
+
+    /**
+     * Like {@link #parseRows(ByteBuffer, CsvRowHandler)}, but reuses the caller's parser, so a worker
+     * that parses many chunks keeps one category cache for all of them.
+     */
+    public static void parseRows(ByteBuffer buffer, SalesCsvParser parser, CsvRowHandler handler) {
+        int limit = buffer.limit();
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                parseRow(parser, buffer, lineStart, i, handler);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < limit) {
+            parseRow(parser, buffer, lineStart, limit, handler);
+        }
     }
 
     public static List<SalesRecord> readAllFromResourceDirectory(int filesCount) throws IOException {
@@ -72,8 +279,8 @@ public final class SalesCsvReader {
     }
 
     private static void readFromFile(Path file, List<SalesRecord> target) throws IOException {
-        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
-            readFromReader(reader, target);
+        try (InputStream is = Files.newInputStream(file)) {
+            readFromStream(is, target);
         }
     }
 
@@ -87,28 +294,123 @@ public final class SalesCsvReader {
             if (is == null) {
                 throw new IOException("Resource not found: " + resourcePath);
             }
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-                readFromReader(reader, target);
+            readFromStream(is, target);
+        }
+    }
+
+    private static void readFromStream(InputStream is, List<SalesRecord> target) throws IOException {
+        SalesCsvParser parser = new SalesCsvParser();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int length = 0;
+        int read;
+
+        while ((read = is.read(buffer, length, buffer.length - length)) != -1) {
+            int scanFrom = length;
+            length += read;
+
+            int lineStart = 0;
+            for (int i = scanFrom; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    parseLine(parser, buffer, lineStart, i, target);
+                    lineStart = i + 1;
+                }
+            }
+
+            length -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, length);
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
             }
         }
+
+        parseLine(parser, buffer, 0, length, target);
     }
 
-    private static void readFromReader(BufferedReader reader, List<SalesRecord> target) throws IOException {
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String trimmed = line.trim();
-            if (trimmed.isEmpty()) {
-                continue;
+    private static ByteBuffer readFully(FileChannel channel, CsvSplit split) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) split.length());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, split.start() + buffer.position()) < 0) {
+                break;
             }
+        }
+        buffer.flip();
+        return buffer;
+    }
 
-            try {
-                SalesRecord record = SalesRecord.fromCsvLine(trimmed);
-                if (record != null) {
-                    target.add(record);
+    private static long nextLineStart(FileChannel channel,
+                                      long from,
+                                      long size,
+                                      ByteBuffer window) throws IOException {
+        // a boundary right after a line terminator is already aligned
+        long position = from - 1;
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
                 }
-            } catch (IllegalArgumentException e) {
-                logger.warn("Failed to parse CSV line: '{}'. Reason: {}", trimmed, e.getMessage());
             }
+            position += read;
+        }
+        return size;
+    }
+
+    private static void parseRow(SalesCsvParser parser,
+                                 ByteBuffer buffer,
+                                 int from,
+                                 int to,
+                                 CsvRowHandler handler) {
+        boolean parsed;
+        try {
+            parsed = parser.parse(buffer, from, to);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Failed to parse CSV line: '{}'. Reason: {}", parser.lineText(), e.getMessage());
+            return;
+        }
+        if (parsed) {
+            handler.onRow(parser);
         }
     }
+
+    private static void parseLine(SalesCsvParser parser,
+                                  byte[] buffer,
+                                  int from,
+                                  int to,
+                                  List<SalesRecord> target) {
+        try {
+            if (parser.parse(buffer, from, to)) {
+                target.add(parser.toRecord());
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Failed to parse CSV line: '{}'. Reason: {}", parser.lineText(), e.getMessage());
+        }
+    }
+
+    /**
+     * Parses a single CSV line, returning {@code null} for blank lines, the header
+     * and malformed rows (the latter are logged and skipped).
+     */
+    public static SalesRecord parseLine(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return SalesRecord.fromCsvLine(trimmed);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Failed to parse CSV line: '{}'. Reason: {}", trimmed, e.getMessage());
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SplitReader<T> {
+
+        T read(CsvSplit split) throws IOException;
+    }
 }
@@ -0,0 +1,12 @@
+package se.ifmo.mapreduce;
+
+/**
+ * Map-side pre-aggregation applied by each map task to its local output before it is
+ * published to the shared {@link MapContext}. Like Hadoop's combiner, it must be
+ * associative and commutative, and may be applied zero, one or several times per key.
+ */
+@FunctionalInterface
+public interface Combiner<K, V> {
+
+    V combine(K key, Iterable<V> values);
+}
@@ -0,0 +1,83 @@
+package se.ifmo.mapreduce;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Task-local {@link MapContext} that buffers map output and folds it with a {@link Combiner}.
+ * Not thread-safe: each map task owns its own instance and publishes it with {@link #flushTo}.
+ */
+public class CombiningMapContext<K, V> implements MapContext<K, V> {
+
+    private static final int DEFAULT_COMBINE_THRESHOLD = 4096;
+
+    private final Combiner<K, V> combiner;
+    private final int combineThreshold;
+
+    private final Map<K, List<V>> buffer = new HashMap<>();
+    private int bufferedValues;
+    private int nextCombineAt;
+
+    public CombiningMapContext(Combiner<K, V> combiner) {
+        this(combiner, DEFAULT_COMBINE_THRESHOLD);
+    }
+
+    public CombiningMapContext(Combiner<K, V> combiner, int combineThreshold) {
+        if (combineThreshold <= 0) {
+            throw new IllegalArgumentException("combineThreshold must be > 0");
+        }
+        this.combiner = Objects.requireNonNull(combiner, "combiner must not be null");
+        this.combineThreshold = combineThreshold;
+        this.nextCombineAt = combineThreshold;
+    }
+
+    @Override
+    public void write(K key, V value) {
+        buffer.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        if (++bufferedValues >= nextCombineAt) {
+            combineInPlace();
+        }
+    }
+
+    @Override
+    public Map<K, List<V>> getGroupedData() {
+        return buffer;
+    }
+
+    public void flushTo(MapContext<K, V> target) {
+        for (Map.Entry<K, List<V>> entry : buffer.entrySet()) {
+            V combined = combine(entry.getKey(), entry.getValue());
+            if (combined != null) {
+                target.write(entry.getKey(), combined);
+            }
+        }
+        buffer.clear();
+        bufferedValues = 0;
+        nextCombineAt = combineThreshold;
+    }
+
+    private void combineInPlace() {
+        int remaining = 0;
+        for (Map.Entry<K, List<V>> entry : buffer.entrySet()) {
+            List<V> values = entry.getValue();
+            if (values.size() > 1) {
+                V combined = combine(entry.getKey(), values);
+                values.clear();
+                if (combined != null) {
+                    values.add(combined);
+                }
+            }
+            remaining += values.size();
+        }
+        bufferedValues = remaining;
+        // high-cardinality output barely shrinks, so back off instead of re-combining on every write
+        nextCombineAt = Math.max(combineThreshold, remaining * 2);
+    }
+
+    private V combine(K key, List<V> values) {
+        return values.size() == 1 ? values.get(0) : combiner.combine(key, values);
+    }
+}
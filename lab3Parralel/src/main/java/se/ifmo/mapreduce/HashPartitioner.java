@@ -0,0 +1,12 @@
+package se.ifmo.mapreduce;
+
+public class HashPartitioner<K> implements Partitioner<K> {
+
+    @Override
+    public int getPartition(K key, int numPartitions) {
+        if (key == null) {
+            return 0;
+        }
+        return (key.hashCode() & Integer.MAX_VALUE) % numPartitions;
+    }
+}
@@ -7,4 +7,12 @@ public interface MapContext<K, V> {
 
     void write(K key, V value);
     Map<K, List<V>> getGroupedData();
+
+    /**
+     * Returns the context a single map task should write to. Shared contexts return themselves;
+     * contexts with per-task buffers hand out a private, single-threaded writer.
+     */
+    default MapContext<K, V> taskContext() {
+        return this;
+    }
 }
@@ -0,0 +1,130 @@
+package se.ifmo.mapreduce;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link MapContext} where every map task writes into its own private buffer, split into
+ * reduce partitions by a {@link Partitioner}, so the write path takes no shared lock.
+ * Buffers are merged partition by partition at the map/reduce barrier.
+ */
+public class PartitionedMapContext<K, V> implements MapContext<K, V> {
+
+    private final int partitionsCount;
+    private final Partitioner<K> partitioner;
+
+    private final List<TaskBuffer> buffers = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<TaskBuffer> threadBuffer = ThreadLocal.withInitial(this::newTaskBuffer);
+
+    public PartitionedMapContext(int partitionsCount) {
+        this(partitionsCount, new HashPartitioner<>());
+    }
+
+    public PartitionedMapContext(int partitionsCount, Partitioner<K> partitioner) {
+        if (partitionsCount <= 0) {
+            throw new IllegalArgumentException("partitionsCount must be > 0");
+        }
+        this.partitionsCount = partitionsCount;
+        this.partitioner = Objects.requireNonNull(partitioner, "partitioner must not be null");
+    }
+
+    public int getPartitionsCount() {
+        return partitionsCount;
+    }
+
+    @Override
+    public MapContext<K, V> taskContext() {
+        return newTaskBuffer();
+    }
+
+    /**
+     * Writes through a buffer bound to the calling thread; map runners should prefer
+     * {@link #taskContext()}, which avoids the thread-local lookup.
+     */
+    @Override
+    public void write(K key, V value) {
+        threadBuffer.get().write(key, value);
+    }
+
+    @Override
+    public Map<K, List<V>> getGroupedData() {
+        Map<K, List<V>> result = new HashMap<>();
+        for (int partition = 0; partition < partitionsCount; partition++) {
+            result.putAll(getPartition(partition));
+        }
+        return result;
+    }
+
+    /**
+     * Merges the given partition of all task buffers. Must be called only after the map phase
+     * has completed; different partitions may be merged concurrently.
+     */
+    public Map<K, List<V>> getPartition(int partition) {
+        if (partition < 0 || partition >= partitionsCount) {
+            throw new IndexOutOfBoundsException("partition " + partition + " out of range [0, " + partitionsCount + ")");
+        }
+
+        Map<K, List<V>> merged = new HashMap<>();
+        // lists copied on a key's first collision; later buffers append to them in place, while
+        // lists still owned by a buffer are never modified, so partitions can be merged again
+        Set<List<V>> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (TaskBuffer buffer : buffers) {
+            for (Map.Entry<K, List<V>> entry : buffer.partitions[partition].entrySet()) {
+                List<V> existing = merged.putIfAbsent(entry.getKey(), entry.getValue());
+                if (existing == null) {
+                    continue;
+                }
+                if (!owned.contains(existing)) {
+                    List<V> combined = new ArrayList<>(existing);
+                    merged.put(entry.getKey(), combined);
+                    owned.add(combined);
+                    existing = combined;
+                }
+                existing.addAll(entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    private TaskBuffer newTaskBuffer() {
+        TaskBuffer buffer = new TaskBuffer();
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    private final class TaskBuffer implements MapContext<K, V> {
+
+        private final Map<K, List<V>>[] partitions;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private TaskBuffer() {
+            partitions = new Map[partitionsCount];
+            for (int i = 0; i < partitionsCount; i++) {
+                partitions[i] = new HashMap<>();
+            }
+        }
+
+        @Override
+        public void write(K key, V value) {
+            int partition = partitioner.getPartition(key, partitionsCount);
+            partitions[partition].computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+
+        @Override
+        public Map<K, List<V>> getGroupedData() {
+            Map<K, List<V>> result = new HashMap<>();
+            for (Map<K, List<V>> partition : partitions) {
+                result.putAll(partition);
+            }
+            return result;
+        }
+    }
+}
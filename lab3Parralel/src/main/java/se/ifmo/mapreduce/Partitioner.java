@@ -0,0 +1,11 @@
+package se.ifmo.mapreduce;
+
+/**
+ * Routes a map output key to one of {@code numPartitions} reduce partitions.
+ * Implementations must be deterministic: equal keys always land in the same partition.
+ */
+@FunctionalInterface
+public interface Partitioner<K> {
+
+    int getPartition(K key, int numPartitions);
+}
@@ -0,0 +1,16 @@
+package se.ifmo.mapreduce;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of keys or values, used when map output leaves the heap
+ * (see {@link SpillingMapContext}). {@link #read} must consume exactly what {@link #write} wrote.
+ */
+public interface Serializer<T> {
+
+    void write(DataOutput out, T value) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
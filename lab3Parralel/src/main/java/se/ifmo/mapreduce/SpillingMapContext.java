@@ -0,0 +1,600 @@
+package se.ifmo.mapreduce;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link MapContext} with bounded memory, modelled on Hadoop's sort/spill: every map worker thread
+ * serializes its output into a private buffer, and once the buffer reaches the memory budget it is
+ * sorted by partition and key and spilled to a temp file as one sorted run. The reduce side
+ * k-way merges the runs of a partition and hands the reducer one key at a time, with values read
+ * lazily from the merge, so only the current record of each run is held in memory.
+ *
+ * <p>The memory budget applies to each worker buffer; all tasks run by one thread share its buffer,
+ * so unspilled map output grows with the number of threads, not of tasks. Like Hadoop's
+ * {@code io.sort.factor}, runs are merged in passes until at most {@value #MERGE_FACTOR} remain,
+ * which bounds the open files and read buffers of a partition merge. Spill files are deleted by
+ * {@link #close()}.
+ */
+public class SpillingMapContext<K, V> implements MapContext<K, V>, Closeable {
+
+    private static final int RECORD_OVERHEAD_BYTES = 3 * Integer.BYTES;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final int MERGE_FACTOR = 64;
+
+    private final int partitionsCount;
+    private final Partitioner<K> partitioner;
+    private final Path spillDirectory;
+    private final long memoryBudgetBytes;
+    private final Serializer<K> keySerializer;
+    private final Comparator<? super K> keyComparator;
+    private final Serializer<V> valueSerializer;
+
+    // keyed by thread rather than a ThreadLocal, so pooled threads do not keep buffers alive after close()
+    private final Map<Thread, TaskBuffer> buffers = new ConcurrentHashMap<>();
+    private final List<SpillRun> runs = new CopyOnWriteArrayList<>();
+
+    public SpillingMapContext(int partitionsCount,
+                              Path spillDirectory,
+                              long memoryBudgetBytes,
+                              Serializer<K> keySerializer,
+                              Comparator<? super K> keyComparator,
+                              Serializer<V> valueSerializer) {
+        this(partitionsCount, new HashPartitioner<>(), spillDirectory, memoryBudgetBytes,
+                keySerializer, keyComparator, valueSerializer);
+    }
+
+    public SpillingMapContext(int partitionsCount,
+                              Partitioner<K> partitioner,
+                              Path spillDirectory,
+                              long memoryBudgetBytes,
+                              Serializer<K> keySerializer,
+                              Comparator<? super K> keyComparator,
+                              Serializer<V> valueSerializer) {
+        if (partitionsCount <= 0) {
+            throw new IllegalArgumentException("partitionsCount must be > 0");
+        }
+        if (memoryBudgetBytes <= 0 || memoryBudgetBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("memoryBudgetBytes must be in (0, Integer.MAX_VALUE]");
+        }
+        this.partitionsCount = partitionsCount;
+        this.partitioner = Objects.requireNonNull(partitioner, "partitioner must not be null");
+        this.spillDirectory = Objects.requireNonNull(spillDirectory, "spillDirectory must not be null");
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.keySerializer = Objects.requireNonNull(keySerializer, "keySerializer must not be null");
+        this.keyComparator = Objects.requireNonNull(keyComparator, "keyComparator must not be null");
+        this.valueSerializer = Objects.requireNonNull(valueSerializer, "valueSerializer must not be null");
+    }
+
+    public int getPartitionsCount() {
+        return partitionsCount;
+    }
+
+    public int getSpillsCount() {
+        return runs.size();
+    }
+
+    /**
+     * Returns the buffer of the calling thread; tasks that run one after another on a worker thread
+     * share it.
+     */
+    @Override
+    public MapContext<K, V> taskContext() {
+        return buffers.computeIfAbsent(Thread.currentThread(), thread -> new TaskBuffer());
+    }
+
+    @Override
+    public void write(K key, V value) {
+        taskContext().write(key, value);
+    }
+
+    /**
+     * Materializes all groups in memory; only meant for small outputs, use
+     * {@link #reducePartition} to stay within the memory budget.
+     */
+    @Override
+    public Map<K, List<V>> getGroupedData() {
+        return groupAll(prepareRuns());
+    }
+
+    /**
+     * Reduces the given partition key by key, in key order. Must be called only after the map
+     * phase has completed; different partitions may be reduced concurrently. The values passed to
+     * the reducer are read from the spill files while it iterates them and can be iterated once.
+     */
+    public <OUT> void reducePartition(int partition,
+                                      Reducer<K, V, OUT> reducer,
+                                      BiConsumer<? super K, ? super OUT> output) {
+        if (partition < 0 || partition >= partitionsCount) {
+            throw new IndexOutOfBoundsException("partition " + partition + " out of range [0, " + partitionsCount + ")");
+        }
+        forEachGroup(prepareRuns(), partition, (key, values) -> output.accept(key, reducer.reduce(key, values)));
+    }
+
+    /**
+     * Deletes all spill files.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (SpillRun run : runs) {
+            try {
+                Files.deleteIfExists(run.file);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        runs.clear();
+        buffers.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Map<K, List<V>> groupAll(List<SpillRun> sources) {
+        Map<K, List<V>> result = new HashMap<>();
+        for (int partition = 0; partition < partitionsCount; partition++) {
+            forEachGroup(sources, partition, (key, values) -> {
+                List<V> list = new ArrayList<>();
+                values.forEach(list::add);
+                result.put(key, list);
+            });
+        }
+        return result;
+    }
+
+    private void forEachGroup(List<SpillRun> sources, int partition, BiConsumer<K, Iterable<V>> consumer) {
+        PriorityQueue<RunCursor> heap = newHeap(sources.size());
+        GroupValues group = null;
+        try {
+            openCursors(sources, partition, heap);
+            while (!heap.isEmpty()) {
+                group = new GroupValues(heap);
+                consumer.accept(group.key, group);
+                group.skipRemaining();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to merge spilled runs of partition " + partition, e);
+        } finally {
+            if (group != null) {
+                group.close();
+            }
+            heap.forEach(RunCursor::close);
+        }
+    }
+
+    private synchronized List<SpillRun> prepareRuns() {
+        for (TaskBuffer buffer : buffers.values()) {
+            buffer.seal();
+        }
+        while (runs.size() > MERGE_FACTOR) {
+            List<SpillRun> group = new ArrayList<>(runs.subList(0, MERGE_FACTOR));
+            SpillRun merged = mergeRuns(group);
+            runs.add(merged);
+            runs.removeAll(group);
+            for (SpillRun run : group) {
+                try {
+                    Files.deleteIfExists(run.file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to delete merged spill file " + run.file, e);
+                }
+            }
+        }
+        return new ArrayList<>(runs);
+    }
+
+    private SpillRun mergeRuns(List<SpillRun> group) {
+        Path file = createSpillFile();
+        long[] partitionOffsets = new long[partitionsCount + 1];
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.WRITE), IO_BUFFER_SIZE))) {
+            long position = 0;
+            for (int partition = 0; partition < partitionsCount; partition++) {
+                partitionOffsets[partition] = position;
+                PriorityQueue<RunCursor> heap = newHeap(group.size());
+                try {
+                    openCursors(group, partition, heap);
+                    while (!heap.isEmpty()) {
+                        RunCursor cursor = heap.poll();
+                        position += cursor.copyTo(out);
+                        if (cursor.advance()) {
+                            heap.add(cursor);
+                        } else {
+                            cursor.close();
+                        }
+                    }
+                } finally {
+                    heap.forEach(RunCursor::close);
+                }
+            }
+            partitionOffsets[partitionsCount] = position;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("Failed to merge spill runs into " + file, e);
+        }
+        return new SpillRun(file, partitionOffsets);
+    }
+
+    private PriorityQueue<RunCursor> newHeap(int runsCount) {
+        return new PriorityQueue<>(Math.max(1, runsCount), (left, right) -> keyComparator.compare(left.key, right.key));
+    }
+
+    private void openCursors(List<SpillRun> sources, int partition, PriorityQueue<RunCursor> heap) throws IOException {
+        for (SpillRun run : sources) {
+            if (run.partitionOffsets[partition] == run.partitionOffsets[partition + 1]) {
+                continue;
+            }
+            RunCursor cursor = new RunCursor(run, partition);
+            if (cursor.advance()) {
+                heap.add(cursor);
+            } else {
+                cursor.close();
+            }
+        }
+    }
+
+    private Path createSpillFile() {
+        try {
+            Files.createDirectories(spillDirectory);
+            return Files.createTempFile(spillDirectory, "spill-", ".bin");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create spill file in " + spillDirectory, e);
+        }
+    }
+
+    /**
+     * Values of the current key, pulled from the merge heap as they are iterated: the cursor that
+     * holds the next value is taken off the heap and read until its key changes.
+     */
+    private final class GroupValues implements Iterable<V>, Iterator<V> {
+
+        private final PriorityQueue<RunCursor> heap;
+        private final K key;
+
+        private RunCursor current;
+        private boolean iterated;
+
+        GroupValues(PriorityQueue<RunCursor> heap) {
+            this.heap = heap;
+            this.key = heap.peek().key;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            if (iterated) {
+                throw new IllegalStateException("Values of key " + key + " can only be iterated once");
+            }
+            iterated = true;
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (current == null && !heap.isEmpty() && keyComparator.compare(heap.peek().key, key) == 0) {
+                current = heap.poll();
+            }
+            return current != null;
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                V value = current.value();
+                advance();
+                return value;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read spilled values of key " + key, e);
+            }
+        }
+
+        /**
+         * Moves the merge past the values the reducer did not read.
+         */
+        void skipRemaining() throws IOException {
+            while (hasNext()) {
+                advance();
+            }
+        }
+
+        void close() {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+
+        private void advance() throws IOException {
+            if (!current.advance()) {
+                current.close();
+                current = null;
+            } else if (keyComparator.compare(current.key, key) != 0) {
+                heap.add(current);
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Serialized map output of one worker thread: record bytes in {@link #data} plus, per record,
+     * its partition and the offsets of its key and value.
+     */
+    private final class TaskBuffer implements MapContext<K, V> {
+
+        private final RecordBuffer data = new RecordBuffer();
+        private final DataOutputStream out = new DataOutputStream(data);
+
+        private int[] partitions = new int[1024];
+        private int[] keyOffsets = new int[1024];
+        private int[] valueOffsets = new int[1024];
+        private int count;
+
+        private final List<SpillRun> ownRuns = new ArrayList<>();
+
+        private boolean sealed;
+
+        @Override
+        public void write(K key, V value) {
+            if (sealed) {
+                throw new IllegalStateException("Map output is already being reduced");
+            }
+            if (count == partitions.length) {
+                int capacity = count * 2;
+                partitions = Arrays.copyOf(partitions, capacity);
+                keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+                valueOffsets = Arrays.copyOf(valueOffsets, capacity);
+            }
+
+            try {
+                partitions[count] = partitioner.getPartition(key, partitionsCount);
+                keyOffsets[count] = data.size();
+                keySerializer.write(out, key);
+                valueOffsets[count] = data.size();
+                valueSerializer.write(out, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to serialize map output", e);
+            }
+            count++;
+
+            if (data.size() + (long) count * RECORD_OVERHEAD_BYTES >= memoryBudgetBytes) {
+                spill();
+            }
+        }
+
+        /**
+         * Groups the output written through this buffer so far: the buffered records are spilled as
+         * a sorted run and merged with the earlier runs of this buffer.
+         */
+        @Override
+        public synchronized Map<K, List<V>> getGroupedData() {
+            if (sealed) {
+                throw new IllegalStateException("Map output is already being reduced");
+            }
+            spill();
+            return groupAll(new ArrayList<>(ownRuns));
+        }
+
+        synchronized void seal() {
+            if (!sealed) {
+                sealed = true;
+                spill();
+            }
+        }
+
+        private void spill() {
+            if (count == 0) {
+                return;
+            }
+
+            Integer[] order = sortedOrder();
+            long[] partitionOffsets = new long[partitionsCount + 1];
+
+            Path file = createSpillFile();
+            // register before writing so close() removes the file even if the spill fails
+            SpillRun run = new SpillRun(file, partitionOffsets);
+            runs.add(run);
+            ownRuns.add(run);
+
+            byte[] bytes = data.buffer();
+            try (DataOutputStream spill = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.WRITE), IO_BUFFER_SIZE))) {
+                long position = 0;
+                int partition = 0;
+                for (Integer index : order) {
+                    while (partition < partitions[index]) {
+                        partitionOffsets[++partition] = position;
+                    }
+                    int keyLength = valueOffsets[index] - keyOffsets[index];
+                    int valueLength = end(index) - valueOffsets[index];
+                    spill.writeInt(keyLength);
+                    spill.write(bytes, keyOffsets[index], keyLength);
+                    spill.writeInt(valueLength);
+                    spill.write(bytes, valueOffsets[index], valueLength);
+                    position += 2L * Integer.BYTES + keyLength + valueLength;
+                }
+                while (partition < partitionsCount) {
+                    partitionOffsets[++partition] = position;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write spill file " + file, e);
+            }
+
+            data.reset();
+            count = 0;
+        }
+
+        private Integer[] sortedOrder() {
+            List<K> keys = new ArrayList<>(count);
+            RecordInput input = new RecordInput(data.buffer());
+            DataInputStream in = new DataInputStream(input);
+            try {
+                for (int i = 0; i < count; i++) {
+                    input.select(keyOffsets[i], valueOffsets[i]);
+                    keys.add(keySerializer.read(in));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to deserialize buffered key", e);
+            }
+
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (left, right) -> {
+                int byPartition = Integer.compare(partitions[left], partitions[right]);
+                return byPartition != 0 ? byPartition : keyComparator.compare(keys.get(left), keys.get(right));
+            });
+            return order;
+        }
+
+        private int end(int index) {
+            return index + 1 < count ? keyOffsets[index + 1] : data.size();
+        }
+    }
+
+    /**
+     * One sorted spill file; partition {@code p} occupies bytes
+     * {@code [partitionOffsets[p], partitionOffsets[p + 1])}.
+     */
+    private static final class SpillRun {
+
+        private final Path file;
+        private final long[] partitionOffsets;
+
+        SpillRun(Path file, long[] partitionOffsets) {
+            this.file = file;
+            this.partitionOffsets = partitionOffsets;
+        }
+    }
+
+    /**
+     * Reads the records of one partition of a spill run in key order. Record bytes are kept raw,
+     * so values are only deserialized when reduced and merge passes copy records unchanged.
+     */
+    private final class RunCursor implements Closeable {
+
+        private final FileChannel channel;
+        private final DataInputStream in;
+        private final RecordInput record = new RecordInput(new byte[0]);
+        private final DataInputStream recordIn = new DataInputStream(record);
+        private long remaining;
+
+        private byte[] keyBytes;
+        private byte[] valueBytes;
+        private K key;
+
+        RunCursor(SpillRun run, int partition) throws IOException {
+            long start = run.partitionOffsets[partition];
+            this.remaining = run.partitionOffsets[partition + 1] - start;
+            this.channel = FileChannel.open(run.file, StandardOpenOption.READ);
+            channel.position(start);
+            int bufferSize = (int) Math.max(1, Math.min(IO_BUFFER_SIZE, remaining));
+            this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), bufferSize));
+        }
+
+        boolean advance() throws IOException {
+            if (remaining <= 0) {
+                return false;
+            }
+            keyBytes = readBytes();
+            valueBytes = readBytes();
+            remaining -= 2L * Integer.BYTES + keyBytes.length + valueBytes.length;
+            if (remaining < 0) {
+                throw new EOFException("Spill record crosses the partition boundary");
+            }
+            record.select(keyBytes);
+            key = keySerializer.read(recordIn);
+            return true;
+        }
+
+        V value() throws IOException {
+            record.select(valueBytes);
+            return valueSerializer.read(recordIn);
+        }
+
+        long copyTo(DataOutputStream out) throws IOException {
+            out.writeInt(keyBytes.length);
+            out.write(keyBytes);
+            out.writeInt(valueBytes.length);
+            out.write(valueBytes);
+            return 2L * Integer.BYTES + keyBytes.length + valueBytes.length;
+        }
+
+        private byte[] readBytes() throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // read-only channel, nothing to flush
+            }
+        }
+    }
+
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        RecordBuffer() {
+            super(64 * 1024);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    private static final class RecordInput extends ByteArrayInputStream {
+
+        RecordInput(byte[] bytes) {
+            super(bytes);
+        }
+
+        void select(int from, int to) {
+            pos = from;
+            count = to;
+        }
+
+        void select(byte[] bytes) {
+            buf = bytes;
+            pos = 0;
+            count = bytes.length;
+        }
+    }
+}
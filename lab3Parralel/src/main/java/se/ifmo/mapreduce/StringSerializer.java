@@ -0,0 +1,21 @@
+package se.ifmo.mapreduce;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Serializes strings in modified UTF-8 ({@link DataOutput#writeUTF}), so keys are limited to 64 KB.
+ */
+public final class StringSerializer implements Serializer<String> {
+
+    @Override
+    public void write(DataOutput out, String value) throws IOException {
+        out.writeUTF(value);
+    }
+
+    @Override
+    public String read(DataInput in) throws IOException {
+        return in.readUTF();
+    }
+}
@@ -0,0 +1,160 @@
+package se.ifmo.mapreduce.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.ifmo.io.CsvSplit;
+import se.ifmo.io.SalesCsvReader;
+import se.ifmo.model.CategoryDictionary;
+import se.ifmo.model.CategoryIdAccumulators;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.FixedPointRevenue;
+import se.ifmo.model.SalesColumnStore;
+import se.ifmo.model.SalesRowCursor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sales aggregation keyed by {@link CategoryDictionary} ids instead of category names: every map
+ * task folds its rows into its own array-indexed {@link CategoryIdAccumulators}, the shuffle is an
+ * element-wise merge of those arrays, and names are decoded once for the final result.
+ */
+public class DictionaryAggregationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DictionaryAggregationRunner.class);
+
+    private static final int MIN_RANGE_ROWS = 4096;
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final int threadsCount;
+
+    public DictionaryAggregationRunner(int threadsCount) {
+        if (threadsCount <= 0) {
+            throw new IllegalArgumentException("threadsCount must be > 0");
+        }
+        this.threadsCount = threadsCount;
+    }
+
+    public Map<String, CategoryStats> runSplits(List<CsvSplit> splits, CategoryDictionary dictionary) throws IOException {
+        Objects.requireNonNull(splits, "splits must not be null");
+        Objects.requireNonNull(dictionary, "dictionary must not be null");
+
+        logger.info("DictionaryAggregationRunner: aggregating {} splits, threadsCount={}", splits.size(), threadsCount);
+
+        List<Callable<CategoryIdAccumulators>> tasks = new ArrayList<>(splits.size());
+        for (CsvSplit split : splits) {
+            tasks.add(() -> {
+                CategoryIdAccumulators totals = new CategoryIdAccumulators();
+                SalesCsvReader.readSplit(split, row -> {
+                    long priceUnits = row.hasFixedPointPrice()
+                            ? FixedPointRevenue.toUnits(row.priceUnscaled(), row.priceScale())
+                            : FixedPointRevenue.NOT_REPRESENTABLE;
+                    int categoryId = row.categoryId(dictionary);
+                    if (!addUnits(totals, categoryId, priceUnits, row.quantity())) {
+                        addDecimal(totals, categoryId, row.price(), row.quantity());
+                    }
+                });
+                return totals;
+            });
+        }
+
+        return mergeAndDecode(runAll(tasks), dictionary);
+    }
+
+    public Map<String, CategoryStats> runColumns(SalesColumnStore store) throws IOException {
+        Objects.requireNonNull(store, "store must not be null");
+
+        int rangeSize = (int) Math.max(MIN_RANGE_ROWS, store.rowsCount() / (threadsCount * RANGES_PER_THREAD));
+
+        List<Callable<CategoryIdAccumulators>> tasks = new ArrayList<>();
+        for (SalesColumnStore.Chunk chunk : store.chunks()) {
+            for (int from = 0; from < chunk.size(); from += rangeSize) {
+                int start = from;
+                int end = Math.min(from + rangeSize, chunk.size());
+                tasks.add(() -> {
+                    CategoryIdAccumulators totals = new CategoryIdAccumulators();
+                    SalesRowCursor row = store.cursor();
+                    for (int i = start; i < end; i++) {
+                        row.moveTo(chunk, i);
+                        if (!addUnits(totals, row.categoryId(), row.priceUnits(), row.quantity())) {
+                            addDecimal(totals, row.categoryId(), row.price(), row.quantity());
+                        }
+                    }
+                    return totals;
+                });
+            }
+        }
+
+        logger.info("DictionaryAggregationRunner: aggregating {} columnar rows in {} tasks, threadsCount={}",
+                store.rowsCount(), tasks.size(), threadsCount);
+
+        return mergeAndDecode(runAll(tasks), store.dictionary());
+    }
+
+    /**
+     * Adds the row in fixed-point units; returns {@code false} if the revenue does not fit and the
+     * row has to go through {@link #addDecimal} instead.
+     */
+    private static boolean addUnits(CategoryIdAccumulators totals, int categoryId, long priceUnits, int quantity) {
+        long revenueUnits = FixedPointRevenue.multiply(priceUnits, quantity);
+        if (revenueUnits == FixedPointRevenue.NOT_REPRESENTABLE) {
+            return false;
+        }
+        totals.forId(categoryId).addUnits(revenueUnits, quantity);
+        return true;
+    }
+
+    private static void addDecimal(CategoryIdAccumulators totals, int categoryId, BigDecimal price, int quantity) {
+        totals.forId(categoryId).add(CategoryStats.of(price.multiply(BigDecimal.valueOf(quantity)), quantity));
+    }
+
+    private List<CategoryIdAccumulators> runAll(List<Callable<CategoryIdAccumulators>> tasks) throws IOException {
+        List<Future<CategoryIdAccumulators>> futures = new ArrayList<>(tasks.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        try {
+            for (Callable<CategoryIdAccumulators> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+
+            List<CategoryIdAccumulators> results = new ArrayList<>(futures.size());
+            for (Future<CategoryIdAccumulators> future : futures) {
+                results.add(future.get(5, TimeUnit.MINUTES));
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("DictionaryAggregationRunner: task failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("DictionaryAggregationRunner: task did not finish in time", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("DictionaryAggregationRunner: interrupted while collecting results", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<String, CategoryStats> mergeAndDecode(List<CategoryIdAccumulators> parts,
+                                                             CategoryDictionary dictionary) {
+        CategoryIdAccumulators total = new CategoryIdAccumulators();
+        for (CategoryIdAccumulators part : parts) {
+            part.mergeInto(total);
+        }
+        Map<String, CategoryStats> result = total.decode(dictionary);
+        logger.info("DictionaryAggregationRunner: aggregation completed, categories={}", result.size());
+        return result;
+    }
+}
@@ -0,0 +1,309 @@
+package se.ifmo.mapreduce.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.ifmo.io.SalesCsvParser;
+import se.ifmo.io.SalesCsvReader;
+import se.ifmo.mapreduce.Combiner;
+import se.ifmo.mapreduce.CombiningMapContext;
+import se.ifmo.mapreduce.MapContext;
+import se.ifmo.mapreduce.Mapper;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Map phase for many, possibly small files on slow storage: every file is read by its own reader
+ * task, which cuts it into line-aligned chunks and hands them through a bounded queue to
+ * {@code threadsCount} CPU-bound parse/map workers. Blocking reads therefore overlap across files
+ * instead of serializing, while parsing stays sized for the CPU.
+ *
+ * <p>With {@link ReaderThreads#VIRTUAL} each reader runs on a virtual thread, so thousands of files
+ * cost no platform threads; {@link ReaderThreads#PLATFORM} runs the readers on a fixed pool for
+ * comparison; on a JVM without virtual threads VIRTUAL runs exactly like PLATFORM. At most
+ * {@code maxOpenFiles} files are open at a time in either mode.
+ */
+public class FileIngestionRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileIngestionRunner.class);
+
+    private static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    private static final int DEFAULT_MAX_OPEN_FILES = 256;
+    private static final int QUEUE_CHUNKS_PER_THREAD = 4;
+
+    private static final ByteBuffer END_OF_INPUT = ByteBuffer.allocate(0);
+
+    public enum ReaderThreads {
+        VIRTUAL,
+        PLATFORM
+    }
+
+    private final int threadsCount;
+    private final ReaderThreads readerThreads;
+    private final int platformReadersCount;
+    private final int chunkSize;
+    private final int maxOpenFiles;
+
+    public FileIngestionRunner(int threadsCount, ReaderThreads readerThreads) {
+        this(threadsCount, readerThreads, threadsCount, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_OPEN_FILES);
+    }
+
+    public FileIngestionRunner(int threadsCount,
+                               ReaderThreads readerThreads,
+                               int platformReadersCount,
+                               int chunkSize,
+                               int maxOpenFiles) {
+        if (threadsCount <= 0) {
+            throw new IllegalArgumentException("threadsCount must be > 0");
+        }
+        if (platformReadersCount <= 0) {
+            throw new IllegalArgumentException("platformReadersCount must be > 0");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be > 0");
+        }
+        if (maxOpenFiles <= 0) {
+            throw new IllegalArgumentException("maxOpenFiles must be > 0");
+        }
+        this.threadsCount = threadsCount;
+        this.readerThreads = Objects.requireNonNull(readerThreads, "readerThreads must not be null");
+        this.platformReadersCount = platformReadersCount;
+        this.chunkSize = chunkSize;
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    public void run(List<Path> files,
+                    Mapper<SalesRecord, String, CategoryStats> mapper,
+                    Combiner<String, CategoryStats> combiner,
+                    MapContext<String, CategoryStats> context) throws IOException {
+
+        Objects.requireNonNull(files, "files must not be null");
+        Objects.requireNonNull(mapper, "mapper must not be null");
+        Objects.requireNonNull(context, "context must not be null");
+
+        if (files.isEmpty()) {
+            logger.info("FileIngestionRunner: no files to process, skipping Map phase");
+            return;
+        }
+
+        ExecutorService readExecutor = readerThreads == ReaderThreads.VIRTUAL ? newVirtualReaderExecutor() : null;
+        ReaderThreads actualReaderThreads = readExecutor != null ? ReaderThreads.VIRTUAL : ReaderThreads.PLATFORM;
+        if (readExecutor == null) {
+            readExecutor = Executors.newFixedThreadPool(platformReadersCount);
+        }
+
+        logger.info("FileIngestionRunner: starting Map phase for {} files, threadsCount={}, readerThreads={}, "
+                        + "platformReadersCount={}, combiner={}",
+                files.size(), threadsCount, actualReaderThreads, platformReadersCount, combiner != null);
+
+        BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(threadsCount * QUEUE_CHUNKS_PER_THREAD);
+        Semaphore openFiles = new Semaphore(maxOpenFiles);
+
+        ExecutorService mapExecutor = Executors.newFixedThreadPool(threadsCount);
+
+        List<Future<?>> workers = new ArrayList<>(threadsCount);
+        List<Future<?>> readers = new ArrayList<>(files.size());
+        try {
+            for (int i = 0; i < threadsCount; i++) {
+                workers.add(mapExecutor.submit(createMapWorker(queue, mapper, combiner, context)));
+            }
+            for (Path file : files) {
+                readers.add(readExecutor.submit(() -> {
+                    openFiles.acquire();
+                    try {
+                        readFile(file, queue, workers);
+                    } finally {
+                        openFiles.release();
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> reader : readers) {
+                await(reader);
+            }
+        } finally {
+            readExecutor.shutdownNow();
+            try {
+                for (int i = 0; i < threadsCount; i++) {
+                    if (!enqueue(END_OF_INPUT, queue, workers)) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            shutdown(mapExecutor);
+        }
+
+        for (Future<?> worker : workers) {
+            await(worker);
+        }
+
+        logger.info("FileIngestionRunner: Map phase completed");
+    }
+
+    /**
+     * Returns a thread-per-task executor of virtual threads, or {@code null} if the JVM has none, in
+     * which case the readers run as in {@link ReaderThreads#PLATFORM} mode.
+     */
+    private static ExecutorService newVirtualReaderExecutor() {
+        // looked up reflectively so the project still builds and runs on Java 17
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("FileIngestionRunner: virtual threads are not available on Java {}, running readers as PLATFORM",
+                    Runtime.version().feature());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the file in chunks that end on a line terminator; a line longer than the chunk grows
+     * the buffer instead of being cut.
+     */
+    private void readFile(Path file,
+                          BlockingQueue<ByteBuffer> queue,
+                          List<Future<?>> workers) throws IOException, InterruptedException {
+
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[(int) Math.min(chunkSize, Files.size(file) + 1)];
+            int length = 0;
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+                if (length < buffer.length) {
+                    continue;
+                }
+
+                int cut = lastLineEnd(buffer, length);
+                if (cut == 0) {
+                    buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, chunkSize));
+                    continue;
+                }
+
+                byte[] next = new byte[Math.max(buffer.length, chunkSize)];
+                System.arraycopy(buffer, cut, next, 0, length - cut);
+                publish(ByteBuffer.wrap(buffer, 0, cut), queue, workers);
+                buffer = next;
+                length -= cut;
+            }
+            if (length > 0) {
+                publish(ByteBuffer.wrap(buffer, 0, length), queue, workers);
+            }
+        }
+    }
+
+    private static int lastLineEnd(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static void publish(ByteBuffer chunk,
+                                BlockingQueue<ByteBuffer> queue,
+                                List<Future<?>> workers) throws InterruptedException {
+
+        if (!enqueue(chunk, queue, workers)) {
+            throw new IllegalStateException("FileIngestionRunner: all map workers have stopped");
+        }
+    }
+
+    private static boolean enqueue(ByteBuffer chunk,
+                                   BlockingQueue<ByteBuffer> queue,
+                                   List<Future<?>> workers) throws InterruptedException {
+
+        while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (workers.stream().allMatch(Future::isDone)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Runnable createMapWorker(BlockingQueue<ByteBuffer> queue,
+                                     Mapper<SalesRecord, String, CategoryStats> mapper,
+                                     Combiner<String, CategoryStats> combiner,
+                                     MapContext<String, CategoryStats> context) {
+
+        return () -> {
+            MapContext<String, CategoryStats> workerOutput = context.taskContext();
+            CombiningMapContext<String, CategoryStats> localContext =
+                    combiner != null ? new CombiningMapContext<>(combiner) : null;
+            MapContext<String, CategoryStats> workerContext = localContext != null ? localContext : workerOutput;
+            SalesCsvParser parser = new SalesCsvParser();
+
+            try {
+                ByteBuffer chunk;
+                while ((chunk = queue.take()) != END_OF_INPUT) {
+                    SalesCsvReader.parseRows(chunk, parser, row -> {
+                        SalesRecord record = row.toRecord();
+                        try {
+                            mapper.map(record, workerContext);
+                        } catch (RuntimeException e) {
+                            logger.error("FileIngestionRunner: error while mapping record {}", record, e);
+                        }
+                    });
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (localContext != null) {
+                    localContext.flushTo(workerOutput);
+                }
+            }
+        };
+    }
+
+    private static void await(Future<?> task) throws IOException {
+        try {
+            task.get(5, TimeUnit.MINUTES);
+        } catch (TimeoutException e) {
+            throw new IOException("FileIngestionRunner: task did not finish in time", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("FileIngestionRunner: task failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("FileIngestionRunner: interrupted while waiting for tasks", e);
+        }
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            boolean finished = executor.awaitTermination(5, TimeUnit.MINUTES);
+            if (!finished) {
+                logger.warn("FileIngestionRunner: tasks did not finish in time, forcing shutdownNow()");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            logger.warn("FileIngestionRunner: interrupted while awaiting termination, forcing shutdownNow()", e);
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
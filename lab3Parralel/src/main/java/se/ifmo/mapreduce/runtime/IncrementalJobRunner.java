@@ -0,0 +1,93 @@
+package se.ifmo.mapreduce.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.ifmo.io.AggregationCheckpoint;
+import se.ifmo.model.CategoryStats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Aggregates a set of CSV files incrementally: per-file results are kept in an
+ * {@link AggregationCheckpoint}, only new or changed files are mapped (one engine job per file,
+ * running concurrently) and the totals are merged from the per-file results.
+ */
+public class IncrementalJobRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalJobRunner.class);
+
+    private final JobEngine engine;
+    private final Path checkpointPath;
+
+    public IncrementalJobRunner(JobEngine engine, Path checkpointPath) {
+        this.engine = Objects.requireNonNull(engine, "engine must not be null");
+        this.checkpointPath = Objects.requireNonNull(checkpointPath, "checkpointPath must not be null");
+    }
+
+    /**
+     * @param jobFactory builds the job aggregating the given files
+     * @return totals over all {@code files}
+     */
+    public Map<String, CategoryStats> run(List<Path> files,
+                                          Function<List<Path>, MapReduceJob> jobFactory)
+            throws IOException, InterruptedException {
+
+        Objects.requireNonNull(files, "files must not be null");
+        Objects.requireNonNull(jobFactory, "jobFactory must not be null");
+
+        AggregationCheckpoint checkpoint = AggregationCheckpoint.load(checkpointPath);
+        checkpoint.retainAll(files);
+
+        List<PendingFile> pending = new ArrayList<>();
+        for (Path file : files) {
+            long size = Files.size(file);
+            long lastModifiedMillis = Files.getLastModifiedTime(file).toMillis();
+            if (checkpoint.lookup(file) == null) {
+                CompletableFuture<Map<String, CategoryStats>> result = engine.submit(jobFactory.apply(List.of(file)));
+                pending.add(new PendingFile(file, size, lastModifiedMillis, result));
+            }
+        }
+
+        logger.info("IncrementalJobRunner: {} of {} files are new or changed", pending.size(), files.size());
+
+        Throwable failure = null;
+        for (PendingFile file : pending) {
+            try {
+                checkpoint.update(file.path(), file.size(), file.lastModifiedMillis(), file.result().get());
+            } catch (ExecutionException e) {
+                logger.error("IncrementalJobRunner: failed to aggregate '{}'", file.path(), e.getCause());
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+
+        // keep the files that did succeed, so a rerun only retries the failed ones
+        checkpoint.save(checkpointPath);
+
+        if (failure instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) failure).getCause();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("IncrementalJobRunner: aggregation failed", failure);
+        }
+
+        return checkpoint.totals();
+    }
+
+    private record PendingFile(Path path,
+                               long size,
+                               long lastModifiedMillis,
+                               CompletableFuture<Map<String, CategoryStats>> result) {
+    }
+}
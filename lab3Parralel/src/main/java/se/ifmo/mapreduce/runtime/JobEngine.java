@@ -0,0 +1,152 @@
+package se.ifmo.mapreduce.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.ifmo.mapreduce.PartitionedMapContext;
+import se.ifmo.mapreduce.SpillingMapContext;
+import se.ifmo.mapreduce.StringSerializer;
+import se.ifmo.mapreduce.sales.CategoryStatsSerializer;
+import se.ifmo.model.CategoryStats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived MapReduce engine: owns the worker pools for the lifetime of the process and runs
+ * submitted {@link MapReduceJob}s on them, so job latency no longer includes thread start-up and
+ * several small analyses can share one JVM.
+ *
+ * <p>Map tasks of a job run on a work-stealing {@link ForkJoinPool} sized by the job's map
+ * parallelism and Reduce tasks on one sized by its reduce parallelism (pools are created on first
+ * use and then reused); the blocking job driver runs on a separate fixed pool that bounds the
+ * number of concurrently executing jobs.
+ */
+public class JobEngine implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobEngine.class);
+
+    private final int defaultParallelism;
+    private final ExecutorService jobExecutor;
+    private final Map<Integer, ForkJoinPool> workerPools = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    public JobEngine() {
+        this(Runtime.getRuntime().availableProcessors(), 2);
+    }
+
+    public JobEngine(int defaultParallelism, int maxConcurrentJobs) {
+        if (defaultParallelism <= 0) {
+            throw new IllegalArgumentException("defaultParallelism must be > 0");
+        }
+        if (maxConcurrentJobs <= 0) {
+            throw new IllegalArgumentException("maxConcurrentJobs must be > 0");
+        }
+        this.defaultParallelism = defaultParallelism;
+        this.jobExecutor = Executors.newFixedThreadPool(maxConcurrentJobs);
+    }
+
+    /**
+     * Schedules the job and returns a future completed with its reduced result, or exceptionally
+     * if any phase or the job output fails.
+     */
+    public CompletableFuture<Map<String, CategoryStats>> submit(MapReduceJob job) {
+        Objects.requireNonNull(job, "job must not be null");
+        if (closed) {
+            throw new IllegalStateException("JobEngine is closed");
+        }
+        return CompletableFuture.supplyAsync(() -> execute(job), jobExecutor);
+    }
+
+    private Map<String, CategoryStats> execute(MapReduceJob job) {
+        int mapParallelism = job.mapParallelism() > 0 ? job.mapParallelism() : defaultParallelism;
+        int reduceParallelism = job.reduceParallelism() > 0 ? job.reduceParallelism() : defaultParallelism;
+        ForkJoinPool mapPool = workerPool(mapParallelism);
+        ForkJoinPool reducePool = workerPool(reduceParallelism);
+
+        logger.info("JobEngine: starting job '{}', mapParallelism={}, reduceParallelism={}, reducePartitions={}",
+                job.name(), mapParallelism, reduceParallelism, job.reducePartitions());
+        long start = System.currentTimeMillis();
+
+        try {
+            Map<String, CategoryStats> result = job.spills()
+                    ? executeSpilling(job, mapPool, reducePool)
+                    : executeInMemory(job, mapPool, reducePool);
+
+            if (job.output() != null) {
+                job.output().write(result);
+            }
+
+            logger.info("JobEngine: job '{}' finished in {} ms, result size={}",
+                    job.name(), System.currentTimeMillis() - start, result.size());
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("JobEngine: job '" + job.name() + "' failed", e);
+        }
+    }
+
+    private ForkJoinPool workerPool(int parallelism) {
+        return workerPools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    private Map<String, CategoryStats> executeInMemory(MapReduceJob job,
+                                                       ForkJoinPool mapPool,
+                                                       ForkJoinPool reducePool) throws IOException {
+        PartitionedMapContext<String, CategoryStats> mapContext =
+                new PartitionedMapContext<>(job.reducePartitions());
+
+        job.input().map(new MapPhaseRunner(mapPool), job.mapper(), job.combiner(), mapContext);
+
+        return new ReducePhaseRunner(job.reducePartitions(), reducePool).runReduce(mapContext, job.reducer());
+    }
+
+    private Map<String, CategoryStats> executeSpilling(MapReduceJob job,
+                                                       ForkJoinPool mapPool,
+                                                       ForkJoinPool reducePool) throws IOException {
+        try (SpillingMapContext<String, CategoryStats> mapContext = new SpillingMapContext<>(
+                job.reducePartitions(),
+                job.spillDirectory(),
+                job.spillMemoryBudgetBytes(),
+                new StringSerializer(),
+                Comparator.naturalOrder(),
+                new CategoryStatsSerializer())) {
+
+            job.input().map(new MapPhaseRunner(mapPool), job.mapper(), job.combiner(), mapContext);
+
+            logger.info("JobEngine: job '{}' spilled {} sorted runs", job.name(), mapContext.getSpillsCount());
+
+            return new ReducePhaseRunner(job.reducePartitions(), reducePool).runReduce(mapContext, job.reducer());
+        }
+    }
+
+    /**
+     * Stops accepting jobs, waits for the running ones and shuts the worker pools down.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        jobExecutor.shutdown();
+        try {
+            boolean finished = jobExecutor.awaitTermination(5, TimeUnit.MINUTES);
+            if (!finished) {
+                logger.warn("JobEngine: jobs did not finish in time, forcing shutdownNow()");
+                jobExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            logger.warn("JobEngine: interrupted while awaiting termination, forcing shutdownNow()", e);
+            jobExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        workerPools.values().forEach(ForkJoinPool::shutdown);
+        workerPools.clear();
+    }
+}
@@ -0,0 +1,48 @@
+package se.ifmo.mapreduce.runtime;
+
+import se.ifmo.io.CsvSplit;
+import se.ifmo.io.SalesCsvReader;
+import se.ifmo.mapreduce.Combiner;
+import se.ifmo.mapreduce.MapContext;
+import se.ifmo.mapreduce.Mapper;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesRecord;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Input of a {@link MapReduceJob}: knows how to feed its data through a {@link MapPhaseRunner}.
+ */
+@FunctionalInterface
+public interface JobInput {
+
+    void map(MapPhaseRunner runner,
+             Mapper<SalesRecord, String, CategoryStats> mapper,
+             Combiner<String, CategoryStats> combiner,
+             MapContext<String, CategoryStats> context) throws IOException;
+
+    static JobInput records(Collection<SalesRecord> records) {
+        Objects.requireNonNull(records, "records must not be null");
+        return (runner, mapper, combiner, context) -> runner.run(records, mapper, combiner, context);
+    }
+
+    static JobInput splits(List<CsvSplit> splits) {
+        Objects.requireNonNull(splits, "splits must not be null");
+        return (runner, mapper, combiner, context) -> runner.runSplits(splits, mapper, combiner, context);
+    }
+
+    static JobInput files(List<Path> files, int splitsCount) {
+        Objects.requireNonNull(files, "files must not be null");
+        if (splitsCount <= 0) {
+            throw new IllegalArgumentException("splitsCount must be > 0");
+        }
+        return (runner, mapper, combiner, context) -> {
+            List<CsvSplit> splits = SalesCsvReader.createSplits(files, SalesCsvReader.splitSizeFor(files, splitsCount));
+            runner.runSplits(splits, mapper, combiner, context);
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package se.ifmo.mapreduce.runtime;
+
+import se.ifmo.model.CategoryStats;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sink for the reduced result of a {@link MapReduceJob}, called on the engine before the job's
+ * future completes.
+ */
+@FunctionalInterface
+public interface JobOutput {
+
+    void write(Map<String, CategoryStats> result) throws IOException;
+}
@@ -2,36 +2,73 @@ package se.ifmo.mapreduce.runtime;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.ifmo.io.CsvSplit;
+import se.ifmo.io.SalesCsvReader;
+import se.ifmo.mapreduce.Combiner;
+import se.ifmo.mapreduce.CombiningMapContext;
 import se.ifmo.mapreduce.MapContext;
 import se.ifmo.mapreduce.Mapper;
 import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesColumnStore;
 import se.ifmo.model.SalesRecord;
+import se.ifmo.model.SalesRowCursor;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
 
 public class MapPhaseRunner {
 
     private static final Logger logger = LoggerFactory.getLogger(MapPhaseRunner.class);
 
+    private static final int MIN_LEAF_SIZE = 256;
+    private static final int LEAVES_PER_THREAD = 16;
+    private static final int MAX_SURPLUS_TASKS = 3;
+
     private final int threadsCount;
+    private final ForkJoinPool forkJoinPool;
 
     public MapPhaseRunner(int threadsCount) {
         if (threadsCount <= 0) {
             throw new IllegalArgumentException("threadsCount must be > 0");
         }
         this.threadsCount = threadsCount;
+        this.forkJoinPool = null;
+    }
+
+    /**
+     * Work-stealing mode: records are mapped by recursively split fork/join tasks on the given
+     * pool, which is shared with the caller and is not shut down by this runner.
+     */
+    public MapPhaseRunner(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = Objects.requireNonNull(forkJoinPool, "forkJoinPool must not be null");
+        this.threadsCount = forkJoinPool.getParallelism();
     }
 
     public void run(Collection<SalesRecord> records,
                     Mapper<SalesRecord, String, CategoryStats> mapper,
                     MapContext<String, CategoryStats> context) {
+        run(records, mapper, null, context);
+    }
+
+    public void run(Collection<SalesRecord> records,
+                    Mapper<SalesRecord, String, CategoryStats> mapper,
+                    Combiner<String, CategoryStats> combiner,
+                    MapContext<String, CategoryStats> context) {
 
         Objects.requireNonNull(records, "records must not be null");
         Objects.requireNonNull(mapper, "mapper must not be null");
@@ -47,10 +84,16 @@ public class MapPhaseRunner {
                 : new ArrayList<>(records);
 
         int total = recordList.size();
+
+        if (forkJoinPool != null) {
+            runForkJoin(recordList, mapper, combiner, context);
+            return;
+        }
+
         int chunkSize = calculateChunkSize(total, threadsCount);
 
-        logger.info("MapPhaseRunner: starting Map phase for {} records, threadsCount={}, chunkSize={}",
-                total, threadsCount, chunkSize);
+        logger.info("MapPhaseRunner: starting Map phase for {} records, threadsCount={}, chunkSize={}, combiner={}",
+                total, threadsCount, chunkSize, combiner != null);
 
         ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
 
@@ -59,45 +102,346 @@ public class MapPhaseRunner {
                 int end = Math.min(start + chunkSize, total);
                 List<SalesRecord> chunk = recordList.subList(start, end);
 
-                Runnable task = createMapTask(chunk, mapper, context);
+                Runnable task = createMapTask(chunk, mapper, combiner, context);
                 executor.submit(task);
             }
         } finally {
-            executor.shutdown();
+            shutdown(executor);
+        }
+
+        logger.info("MapPhaseRunner: Map phase completed");
+    }
+
+    /**
+     * Runs one map task per split: each task memory-maps its byte range, parses it and maps
+     * the rows, so the number of splits controls the map parallelism.
+     */
+    public void runSplits(List<CsvSplit> splits,
+                          Mapper<SalesRecord, String, CategoryStats> mapper,
+                          Combiner<String, CategoryStats> combiner,
+                          MapContext<String, CategoryStats> context) throws IOException {
+
+        Objects.requireNonNull(splits, "splits must not be null");
+        Objects.requireNonNull(mapper, "mapper must not be null");
+        Objects.requireNonNull(context, "context must not be null");
+
+        if (splits.isEmpty()) {
+            logger.info("MapPhaseRunner: no splits to process, skipping Map phase");
+            return;
+        }
+
+        logger.info("MapPhaseRunner: starting Map phase for {} splits, threadsCount={}, combiner={}",
+                splits.size(), threadsCount, combiner != null);
+
+        List<Callable<Void>> tasks = new ArrayList<>(splits.size());
+        for (CsvSplit split : splits) {
+            tasks.add(createSplitTask(split, mapper, combiner, context));
+        }
+
+        for (Future<?> task : submitAll(tasks)) {
+            awaitSplit(task);
+        }
+
+        logger.info("MapPhaseRunner: Map phase completed");
+    }
+
+    /**
+     * Scans an off-heap {@link SalesColumnStore}: chunks are cut into row ranges, and every task
+     * moves one {@link SalesRowCursor} over its range, so no per-row objects are created.
+     */
+    public void runColumns(SalesColumnStore store,
+                           Mapper<SalesRowCursor, String, CategoryStats> mapper,
+                           Combiner<String, CategoryStats> combiner,
+                           MapContext<String, CategoryStats> context) {
+
+        Objects.requireNonNull(store, "store must not be null");
+        Objects.requireNonNull(mapper, "mapper must not be null");
+        Objects.requireNonNull(context, "context must not be null");
+
+        if (store.rowsCount() == 0) {
+            logger.info("MapPhaseRunner: no rows to process, skipping Map phase");
+            return;
+        }
+
+        int rangeSize = (int) Math.max(MIN_LEAF_SIZE, store.rowsCount() / (threadsCount * LEAVES_PER_THREAD));
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (SalesColumnStore.Chunk chunk : store.chunks()) {
+            for (int from = 0; from < chunk.size(); from += rangeSize) {
+                tasks.add(createColumnTask(store, chunk, from, Math.min(from + rangeSize, chunk.size()),
+                        mapper, combiner, context));
+            }
+        }
+
+        logger.info("MapPhaseRunner: starting columnar Map phase for {} rows in {} tasks, threadsCount={}, combiner={}",
+                store.rowsCount(), tasks.size(), threadsCount, combiner != null);
+
+        for (Future<?> task : submitAll(tasks)) {
             try {
-                boolean finished = executor.awaitTermination(5, TimeUnit.MINUTES);
-                if (!finished) {
-                    logger.warn("MapPhaseRunner: tasks did not finish in time, forcing shutdownNow()");
-                    executor.shutdownNow();
-                }
+                task.get(5, TimeUnit.MINUTES);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("MapPhaseRunner: columnar map task failed", e.getCause());
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("MapPhaseRunner: columnar map task did not finish in time", e);
             } catch (InterruptedException e) {
-                logger.warn("MapPhaseRunner: interrupted while awaiting termination, forcing shutdownNow()", e);
-                executor.shutdownNow();
                 Thread.currentThread().interrupt();
+                throw new IllegalStateException("MapPhaseRunner: interrupted while collecting columnar results", e);
             }
         }
 
         logger.info("MapPhaseRunner: Map phase completed");
     }
 
+    private Callable<Void> createColumnTask(SalesColumnStore store,
+                                            SalesColumnStore.Chunk chunk,
+                                            int from,
+                                            int to,
+                                            Mapper<SalesRowCursor, String, CategoryStats> mapper,
+                                            Combiner<String, CategoryStats> combiner,
+                                            MapContext<String, CategoryStats> context) {
+
+        return () -> {
+            MapContext<String, CategoryStats> taskOutput = context.taskContext();
+            CombiningMapContext<String, CategoryStats> localContext =
+                    combiner != null ? new CombiningMapContext<>(combiner) : null;
+            MapContext<String, CategoryStats> taskContext = localContext != null ? localContext : taskOutput;
+
+            SalesRowCursor cursor = store.cursor();
+            for (int row = from; row < to; row++) {
+                try {
+                    mapper.map(cursor.moveTo(chunk, row), taskContext);
+                } catch (RuntimeException e) {
+                    logger.error("MapPhaseRunner: error while mapping row {} of a columnar chunk", row, e);
+                }
+            }
+
+            if (localContext != null) {
+                localContext.flushTo(taskOutput);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Submits the tasks to the shared fork/join pool, or to a pool created for this call which is
+     * shut down once the tasks are done.
+     */
+    private List<Future<?>> submitAll(List<Callable<Void>> tasks) {
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        boolean ownsExecutor = forkJoinPool == null;
+        ExecutorService executor = ownsExecutor ? Executors.newFixedThreadPool(threadsCount) : forkJoinPool;
+
+        try {
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+        } finally {
+            if (ownsExecutor) {
+                shutdown(executor);
+            }
+        }
+        return futures;
+    }
+
+    private void runForkJoin(List<SalesRecord> records,
+                             Mapper<SalesRecord, String, CategoryStats> mapper,
+                             Combiner<String, CategoryStats> combiner,
+                             MapContext<String, CategoryStats> context) {
+
+        int leafSize = Math.max(MIN_LEAF_SIZE, records.size() / (threadsCount * LEAVES_PER_THREAD));
+
+        logger.info("MapPhaseRunner: starting fork/join Map phase for {} records, parallelism={}, leafSize={}, combiner={}",
+                records.size(), threadsCount, leafSize, combiner != null);
+
+        Map<Thread, WorkerOutput> outputs = new ConcurrentHashMap<>();
+        forkJoinPool.invoke(new MapRangeTask(records, 0, records.size(), leafSize, mapper, combiner, context, outputs, null));
+
+        for (WorkerOutput output : outputs.values()) {
+            output.flush();
+        }
+
+        logger.info("MapPhaseRunner: Map phase completed, workers used={}", outputs.size());
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            boolean finished = executor.awaitTermination(5, TimeUnit.MINUTES);
+            if (!finished) {
+                logger.warn("MapPhaseRunner: tasks did not finish in time, forcing shutdownNow()");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            logger.warn("MapPhaseRunner: interrupted while awaiting termination, forcing shutdownNow()", e);
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Callable<Void> createSplitTask(CsvSplit split,
+                                           Mapper<SalesRecord, String, CategoryStats> mapper,
+                                           Combiner<String, CategoryStats> combiner,
+                                           MapContext<String, CategoryStats> context) {
+
+        return () -> {
+            MapContext<String, CategoryStats> taskOutput = context.taskContext();
+            CombiningMapContext<String, CategoryStats> localContext =
+                    combiner != null ? new CombiningMapContext<>(combiner) : null;
+            MapContext<String, CategoryStats> taskContext = localContext != null ? localContext : taskOutput;
+
+            SalesCsvReader.readSplit(split, row -> {
+                SalesRecord record = row.toRecord();
+                try {
+                    mapper.map(record, taskContext);
+                } catch (RuntimeException e) {
+                    logger.error("MapPhaseRunner: error while mapping record {}", record, e);
+                }
+            });
+
+            if (localContext != null) {
+                localContext.flushTo(taskOutput);
+            }
+            return null;
+        };
+    }
+
+    private static void awaitSplit(Future<?> task) throws IOException {
+        try {
+            task.get(5, TimeUnit.MINUTES);
+        } catch (TimeoutException e) {
+            throw new IOException("MapPhaseRunner: split was not processed in time", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("MapPhaseRunner: split task failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("MapPhaseRunner: interrupted while collecting split results", e);
+        }
+    }
+
     private Runnable createMapTask(List<SalesRecord> chunk,
                                    Mapper<SalesRecord, String, CategoryStats> mapper,
+                                   Combiner<String, CategoryStats> combiner,
                                    MapContext<String, CategoryStats> context) {
 
         return () -> {
+            MapContext<String, CategoryStats> taskOutput = context.taskContext();
+            CombiningMapContext<String, CategoryStats> localContext =
+                    combiner != null ? new CombiningMapContext<>(combiner) : null;
+            MapContext<String, CategoryStats> taskContext = localContext != null ? localContext : taskOutput;
+
             for (SalesRecord record : chunk) {
                 if (record == null) {
                     continue;
                 }
                 try {
-                    mapper.map(record, context);
+                    mapper.map(record, taskContext);
                 } catch (RuntimeException e) {
                     logger.error("MapPhaseRunner: error while mapping record {}", record, e);
                 }
             }
+
+            if (localContext != null) {
+                localContext.flushTo(taskOutput);
+            }
         };
     }
 
+    /**
+     * Maps a range of records, forking off right halves while the range is larger than the leaf
+     * size and the worker's own queue is nearly empty, so idle workers always find work to steal.
+     * Every worker thread writes into its own {@link WorkerOutput}, whichever ranges it executes.
+     */
+    @SuppressWarnings("serial")
+    private static final class MapRangeTask extends RecursiveAction {
+
+        private final List<SalesRecord> records;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final Mapper<SalesRecord, String, CategoryStats> mapper;
+        private final Combiner<String, CategoryStats> combiner;
+        private final MapContext<String, CategoryStats> context;
+        private final Map<Thread, WorkerOutput> outputs;
+        private final MapRangeTask next;
+
+        MapRangeTask(List<SalesRecord> records, int from, int to, int leafSize,
+                     Mapper<SalesRecord, String, CategoryStats> mapper,
+                     Combiner<String, CategoryStats> combiner,
+                     MapContext<String, CategoryStats> context,
+                     Map<Thread, WorkerOutput> outputs,
+                     MapRangeTask next) {
+            this.records = records;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.mapper = mapper;
+            this.combiner = combiner;
+            this.context = context;
+            this.outputs = outputs;
+            this.next = next;
+        }
+
+        @Override
+        protected void compute() {
+            int high = to;
+            MapRangeTask forked = null;
+            while (high - from > leafSize && getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS) {
+                int middle = (from + high) >>> 1;
+                forked = new MapRangeTask(records, middle, high, leafSize, mapper, combiner, context, outputs, forked);
+                forked.fork();
+                high = middle;
+            }
+
+            MapContext<String, CategoryStats> workerContext = outputs
+                    .computeIfAbsent(Thread.currentThread(), thread -> new WorkerOutput(context, combiner))
+                    .target();
+
+            for (int i = from; i < high; i++) {
+                SalesRecord record = records.get(i);
+                if (record == null) {
+                    continue;
+                }
+                try {
+                    mapper.map(record, workerContext);
+                } catch (RuntimeException e) {
+                    logger.error("MapPhaseRunner: error while mapping record {}", record, e);
+                }
+            }
+
+            for (; forked != null; forked = forked.next) {
+                if (forked.tryUnfork()) {
+                    forked.compute();
+                } else {
+                    forked.join();
+                }
+            }
+        }
+    }
+
+    private static final class WorkerOutput {
+
+        private final MapContext<String, CategoryStats> taskOutput;
+        private final CombiningMapContext<String, CategoryStats> localContext;
+
+        WorkerOutput(MapContext<String, CategoryStats> context, Combiner<String, CategoryStats> combiner) {
+            this.taskOutput = context.taskContext();
+            this.localContext = combiner != null ? new CombiningMapContext<>(combiner) : null;
+        }
+
+        MapContext<String, CategoryStats> target() {
+            return localContext != null ? localContext : taskOutput;
+        }
+
+        void flush() {
+            if (localContext != null) {
+                localContext.flushTo(taskOutput);
+            }
+        }
+    }
+
     private static int calculateChunkSize(int totalRecords, int threadsCount) {
         if (totalRecords <= 0) {
             return 1;
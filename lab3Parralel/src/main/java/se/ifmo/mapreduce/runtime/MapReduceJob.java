@@ -0,0 +1,183 @@
+package se.ifmo.mapreduce.runtime;
+
+import se.ifmo.mapreduce.Combiner;
+import se.ifmo.mapreduce.Mapper;
+import se.ifmo.mapreduce.Reducer;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesRecord;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Description of one analysis submitted to a {@link JobEngine}. The combiner and output are
+ * optional; a map or reduce parallelism of {@code 0} means the engine's default. A job with a spill budget
+ * shuffles through a {@code SpillingMapContext} instead of keeping all map output on the heap.
+ */
+public final class MapReduceJob {
+
+    private final String name;
+    private final JobInput input;
+    private final Mapper<SalesRecord, String, CategoryStats> mapper;
+    private final Combiner<String, CategoryStats> combiner;
+    private final Reducer<String, CategoryStats, CategoryStats> reducer;
+    private final int mapParallelism;
+    private final int reduceParallelism;
+    private final int reducePartitions;
+    private final JobOutput output;
+    private final long spillMemoryBudgetBytes;
+    private final Path spillDirectory;
+
+    private MapReduceJob(Builder builder) {
+        this.name = builder.name;
+        this.input = builder.input;
+        this.mapper = builder.mapper;
+        this.combiner = builder.combiner;
+        this.reducer = builder.reducer;
+        this.mapParallelism = builder.mapParallelism;
+        this.reduceParallelism = builder.reduceParallelism;
+        this.reducePartitions = builder.reducePartitions;
+        this.output = builder.output;
+        this.spillMemoryBudgetBytes = builder.spillMemoryBudgetBytes;
+        this.spillDirectory = builder.spillDirectory;
+    }
+
+    public static Builder builder(JobInput input,
+                                  Mapper<SalesRecord, String, CategoryStats> mapper,
+                                  Reducer<String, CategoryStats, CategoryStats> reducer) {
+        return new Builder(input, mapper, reducer);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public JobInput input() {
+        return input;
+    }
+
+    public Mapper<SalesRecord, String, CategoryStats> mapper() {
+        return mapper;
+    }
+
+    public Combiner<String, CategoryStats> combiner() {
+        return combiner;
+    }
+
+    public Reducer<String, CategoryStats, CategoryStats> reducer() {
+        return reducer;
+    }
+
+    public int mapParallelism() {
+        return mapParallelism;
+    }
+
+    public int reduceParallelism() {
+        return reduceParallelism;
+    }
+
+    public int reducePartitions() {
+        return reducePartitions;
+    }
+
+    public JobOutput output() {
+        return output;
+    }
+
+    public boolean spills() {
+        return spillDirectory != null;
+    }
+
+    public long spillMemoryBudgetBytes() {
+        return spillMemoryBudgetBytes;
+    }
+
+    public Path spillDirectory() {
+        return spillDirectory;
+    }
+
+    public static final class Builder {
+
+        private static final int DEFAULT_REDUCE_PARTITIONS = 4;
+
+        private final JobInput input;
+        private final Mapper<SalesRecord, String, CategoryStats> mapper;
+        private final Reducer<String, CategoryStats, CategoryStats> reducer;
+
+        private String name = "sales-analysis";
+        private Combiner<String, CategoryStats> combiner;
+        private int mapParallelism;
+        private int reduceParallelism;
+        private int reducePartitions = DEFAULT_REDUCE_PARTITIONS;
+        private JobOutput output;
+        private long spillMemoryBudgetBytes;
+        private Path spillDirectory;
+
+        private Builder(JobInput input,
+                        Mapper<SalesRecord, String, CategoryStats> mapper,
+                        Reducer<String, CategoryStats, CategoryStats> reducer) {
+            this.input = Objects.requireNonNull(input, "input must not be null");
+            this.mapper = Objects.requireNonNull(mapper, "mapper must not be null");
+            this.reducer = Objects.requireNonNull(reducer, "reducer must not be null");
+        }
+
+        public Builder name(String name) {
+            this.name = Objects.requireNonNull(name, "name must not be null");
+            return this;
+        }
+
+        public Builder combiner(Combiner<String, CategoryStats> combiner) {
+            this.combiner = combiner;
+            return this;
+        }
+
+        public Builder mapParallelism(int mapParallelism) {
+            if (mapParallelism < 0) {
+                throw new IllegalArgumentException("mapParallelism must be >= 0");
+            }
+            this.mapParallelism = mapParallelism;
+            return this;
+        }
+
+        /**
+         * Worker threads of the Reduce phase, independent of {@link #mapParallelism}.
+         */
+        public Builder reduceParallelism(int reduceParallelism) {
+            if (reduceParallelism < 0) {
+                throw new IllegalArgumentException("reduceParallelism must be >= 0");
+            }
+            this.reduceParallelism = reduceParallelism;
+            return this;
+        }
+
+        public Builder reducePartitions(int reducePartitions) {
+            if (reducePartitions <= 0) {
+                throw new IllegalArgumentException("reducePartitions must be > 0");
+            }
+            this.reducePartitions = reducePartitions;
+            return this;
+        }
+
+        public Builder output(JobOutput output) {
+            this.output = output;
+            return this;
+        }
+
+        /**
+         * Bounds the in-memory map output of each task to {@code memoryBudgetBytes}, spilling sorted
+         * runs to temp files in {@code directory}.
+         */
+        public Builder spill(long memoryBudgetBytes, Path directory) {
+            if (memoryBudgetBytes <= 0) {
+                throw new IllegalArgumentException("memoryBudgetBytes must be > 0");
+            }
+            this.spillMemoryBudgetBytes = memoryBudgetBytes;
+            this.spillDirectory = Objects.requireNonNull(directory, "directory must not be null");
+            return this;
+        }
+
+        public MapReduceJob build() {
+            return new MapReduceJob(this);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package se.ifmo.mapreduce.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.ifmo.io.CsvSplit;
+import se.ifmo.io.SalesCsvReader;
+import se.ifmo.mapreduce.Combiner;
+import se.ifmo.mapreduce.CombiningMapContext;
+import se.ifmo.mapreduce.HashPartitioner;
+import se.ifmo.mapreduce.MapContext;
+import se.ifmo.mapreduce.Mapper;
+import se.ifmo.mapreduce.Partitioner;
+import se.ifmo.mapreduce.Reducer;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the Map and Reduce phases concurrently: as soon as a map task finishes its split, its
+ * output is handed partition by partition to reduce drains, which fold it into a running
+ * per-partition result while other map tasks are still working. After the last map task only
+ * its own output is left to fold, so there is no separate Reduce phase.
+ *
+ * <p>The reducer is applied repeatedly to partial results and must therefore be associative
+ * and commutative, and accept its own output as input (like {@code SalesReducer}).
+ */
+public class PipelinedMapReduceRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedMapReduceRunner.class);
+
+    private final int mapThreadsCount;
+    private final int reduceThreadsCount;
+    private final Partitioner<String> partitioner;
+
+    public PipelinedMapReduceRunner(int mapThreadsCount, int reduceThreadsCount) {
+        this(mapThreadsCount, reduceThreadsCount, new HashPartitioner<>());
+    }
+
+    public PipelinedMapReduceRunner(int mapThreadsCount, int reduceThreadsCount, Partitioner<String> partitioner) {
+        if (mapThreadsCount <= 0) {
+            throw new IllegalArgumentException("mapThreadsCount must be > 0");
+        }
+        if (reduceThreadsCount <= 0) {
+            throw new IllegalArgumentException("reduceThreadsCount must be > 0");
+        }
+        this.mapThreadsCount = mapThreadsCount;
+        this.reduceThreadsCount = reduceThreadsCount;
+        this.partitioner = Objects.requireNonNull(partitioner, "partitioner must not be null");
+    }
+
+    public Map<String, CategoryStats> runSplits(List<CsvSplit> splits,
+                                                Mapper<SalesRecord, String, CategoryStats> mapper,
+                                                Combiner<String, CategoryStats> combiner,
+                                                Reducer<String, CategoryStats, CategoryStats> reducer)
+            throws IOException {
+
+        Objects.requireNonNull(splits, "splits must not be null");
+        Objects.requireNonNull(mapper, "mapper must not be null");
+        Objects.requireNonNull(reducer, "reducer must not be null");
+
+        if (splits.isEmpty()) {
+            logger.info("PipelinedMapReduceRunner: no splits to process, returning empty result");
+            return Map.of();
+        }
+
+        logger.info("PipelinedMapReduceRunner: starting pipelined Map/Reduce for {} splits, mapThreads={}, reduceThreads={}, combiner={}",
+                splits.size(), mapThreadsCount, reduceThreadsCount, combiner != null);
+
+        ExecutorService mapExecutor = Executors.newFixedThreadPool(mapThreadsCount);
+        ExecutorService reduceExecutor = Executors.newFixedThreadPool(reduceThreadsCount);
+
+        List<PartitionDrain> drains = new ArrayList<>(reduceThreadsCount);
+        for (int i = 0; i < reduceThreadsCount; i++) {
+            drains.add(new PartitionDrain(reducer, reduceExecutor));
+        }
+
+        List<Future<?>> tasks = new ArrayList<>(splits.size());
+        try {
+            try {
+                for (CsvSplit split : splits) {
+                    tasks.add(mapExecutor.submit(createMapTask(split, mapper, combiner, drains)));
+                }
+            } finally {
+                shutdown(mapExecutor);
+            }
+        } finally {
+            // every map task has handed off its output by now, so the drains finish on their own
+            shutdown(reduceExecutor);
+        }
+
+        for (Future<?> task : tasks) {
+            awaitTask(task);
+        }
+
+        Map<String, CategoryStats> result = new HashMap<>();
+        for (PartitionDrain drain : drains) {
+            result.putAll(drain.reduced);
+        }
+
+        logger.info("PipelinedMapReduceRunner: Map/Reduce completed, result size={}", result.size());
+        return result;
+    }
+
+    private Callable<Void> createMapTask(CsvSplit split,
+                                         Mapper<SalesRecord, String, CategoryStats> mapper,
+                                         Combiner<String, CategoryStats> combiner,
+                                         List<PartitionDrain> drains) {
+
+        return () -> {
+            TaskOutput taskOutput = new TaskOutput();
+            CombiningMapContext<String, CategoryStats> localContext =
+                    combiner != null ? new CombiningMapContext<>(combiner) : null;
+            MapContext<String, CategoryStats> taskContext = localContext != null ? localContext : taskOutput;
+
+            SalesCsvReader.readSplit(split, row -> {
+                SalesRecord record = row.toRecord();
+                try {
+                    mapper.map(record, taskContext);
+                } catch (RuntimeException e) {
+                    logger.error("PipelinedMapReduceRunner: error while mapping record {}", record, e);
+                }
+            });
+
+            if (localContext != null) {
+                localContext.flushTo(taskOutput);
+            }
+            for (int partition = 0; partition < reduceThreadsCount; partition++) {
+                drains.get(partition).offer(taskOutput.partitions[partition]);
+            }
+            return null;
+        };
+    }
+
+    private static void awaitTask(Future<?> task) throws IOException {
+        try {
+            task.get(5, TimeUnit.MINUTES);
+        } catch (TimeoutException e) {
+            throw new IOException("PipelinedMapReduceRunner: split was not processed in time", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("PipelinedMapReduceRunner: map task failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("PipelinedMapReduceRunner: interrupted while collecting map results", e);
+        }
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            boolean finished = executor.awaitTermination(5, TimeUnit.MINUTES);
+            if (!finished) {
+                logger.warn("PipelinedMapReduceRunner: tasks did not finish in time, forcing shutdownNow()");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            logger.warn("PipelinedMapReduceRunner: interrupted while awaiting termination, forcing shutdownNow()", e);
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Map output of one task, already split into reduce partitions.
+     */
+    private final class TaskOutput implements MapContext<String, CategoryStats> {
+
+        private final Map<String, List<CategoryStats>>[] partitions;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private TaskOutput() {
+            partitions = new Map[reduceThreadsCount];
+            for (int i = 0; i < reduceThreadsCount; i++) {
+                partitions[i] = new HashMap<>();
+            }
+        }
+
+        @Override
+        public void write(String key, CategoryStats value) {
+            int partition = partitioner.getPartition(key, reduceThreadsCount);
+            partitions[partition].computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+
+        @Override
+        public Map<String, List<CategoryStats>> getGroupedData() {
+            Map<String, List<CategoryStats>> result = new HashMap<>();
+            for (Map<String, List<CategoryStats>> partition : partitions) {
+                result.putAll(partition);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Folds the task outputs of one partition into its running result. At most one drain run per
+     * partition is scheduled at a time, so {@link #reduced} has a single writer; the
+     * {@code scheduled} flag hands it over safely between reduce threads.
+     */
+    private static final class PartitionDrain implements Runnable {
+
+        private final Reducer<String, CategoryStats, CategoryStats> reducer;
+        private final ExecutorService executor;
+
+        private final Queue<Map<String, List<CategoryStats>>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Map<String, CategoryStats> reduced = new HashMap<>();
+
+        PartitionDrain(Reducer<String, CategoryStats, CategoryStats> reducer, ExecutorService executor) {
+            this.reducer = reducer;
+            this.executor = executor;
+        }
+
+        void offer(Map<String, List<CategoryStats>> taskPartition) {
+            if (taskPartition.isEmpty()) {
+                return;
+            }
+            pending.add(taskPartition);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                Map<String, List<CategoryStats>> taskPartition;
+                while ((taskPartition = pending.poll()) != null) {
+                    fold(taskPartition);
+                }
+                scheduled.set(false);
+                // an offer may have slipped in after the last poll; keep going instead of resubmitting
+            } while (!pending.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+
+        private void fold(Map<String, List<CategoryStats>> taskPartition) {
+            for (Map.Entry<String, List<CategoryStats>> entry : taskPartition.entrySet()) {
+                String key = entry.getKey();
+                List<CategoryStats> values = entry.getValue();
+                if (key == null || values.isEmpty()) {
+                    continue;
+                }
+
+                CategoryStats previous = reduced.get(key);
+                if (previous != null) {
+                    values.add(previous);
+                }
+                try {
+                    CategoryStats folded = reducer.reduce(key, values);
+                    if (folded != null) {
+                        reduced.put(key, folded);
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("PipelinedMapReduceRunner: error while reducing key '{}'", key, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package se.ifmo.mapreduce.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.ifmo.model.CategoryStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ranks a reduced result by revenue, highest first. {@link #sort} orders every key and switches to
+ * a parallel merge sort for large results; {@link #topK} keeps only the best {@code k} keys in one
+ * bounded heap per partition and merges the heaps, so ranking millions of keys for a short report
+ * never sorts the whole result.
+ */
+public class RankStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(RankStage.class);
+
+    /**
+     * Revenue descending, ties broken by key so the order does not depend on hash iteration order.
+     */
+    public static final Comparator<Map.Entry<String, CategoryStats>> BY_REVENUE_DESC = (left, right) -> {
+        int byRevenue = CategoryStats.compareByRevenue(right.getValue(), left.getValue());
+        return byRevenue != 0 ? byRevenue : left.getKey().compareTo(right.getKey());
+    };
+
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final int threadsCount;
+
+    public RankStage(int threadsCount) {
+        if (threadsCount <= 0) {
+            throw new IllegalArgumentException("threadsCount must be > 0");
+        }
+        this.threadsCount = threadsCount;
+    }
+
+    public List<Map.Entry<String, CategoryStats>> sort(Map<String, CategoryStats> result) {
+        Objects.requireNonNull(result, "result must not be null");
+
+        Map.Entry<String, CategoryStats>[] entries = toArray(result);
+        if (entries.length >= PARALLEL_THRESHOLD && threadsCount > 1) {
+            logger.info("RankStage: parallel sort of {} keys", entries.length);
+            Arrays.parallelSort(entries, BY_REVENUE_DESC);
+        } else {
+            Arrays.sort(entries, BY_REVENUE_DESC);
+        }
+        return Arrays.asList(entries);
+    }
+
+    public List<Map.Entry<String, CategoryStats>> topK(Map<String, CategoryStats> result, int k) {
+        Objects.requireNonNull(result, "result must not be null");
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be > 0");
+        }
+        if (k >= result.size()) {
+            return sort(result);
+        }
+
+        Map.Entry<String, CategoryStats>[] entries = toArray(result);
+
+        int partitionsCount = entries.length >= PARALLEL_THRESHOLD ? threadsCount : 1;
+        logger.info("RankStage: selecting top {} of {} keys in {} partitions", k, entries.length, partitionsCount);
+
+        PriorityQueue<Map.Entry<String, CategoryStats>> merged = newHeap(k, entries.length);
+        for (PriorityQueue<Map.Entry<String, CategoryStats>> heap : selectPartitions(entries, k, partitionsCount)) {
+            for (Map.Entry<String, CategoryStats> entry : heap) {
+                offer(merged, entry, k);
+            }
+        }
+
+        List<Map.Entry<String, CategoryStats>> top = new ArrayList<>(merged);
+        top.sort(BY_REVENUE_DESC);
+        return top;
+    }
+
+    private List<PriorityQueue<Map.Entry<String, CategoryStats>>> selectPartitions(
+            Map.Entry<String, CategoryStats>[] entries, int k, int partitionsCount) {
+
+        if (partitionsCount == 1) {
+            return List.of(select(entries, 0, entries.length, k));
+        }
+
+        int partitionSize = (entries.length + partitionsCount - 1) / partitionsCount;
+        List<Future<PriorityQueue<Map.Entry<String, CategoryStats>>>> futures = new ArrayList<>(partitionsCount);
+
+        ExecutorService executor = Executors.newFixedThreadPool(partitionsCount);
+        try {
+            for (int from = 0; from < entries.length; from += partitionSize) {
+                int start = from;
+                int end = Math.min(from + partitionSize, entries.length);
+                futures.add(executor.submit(() -> select(entries, start, end, k)));
+            }
+
+            List<PriorityQueue<Map.Entry<String, CategoryStats>>> heaps = new ArrayList<>(futures.size());
+            for (Future<PriorityQueue<Map.Entry<String, CategoryStats>>> future : futures) {
+                heaps.add(future.get(5, TimeUnit.MINUTES));
+            }
+            return heaps;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("RankStage: top-k partition failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("RankStage: top-k partition did not finish in time", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("RankStage: interrupted while selecting top-k", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static PriorityQueue<Map.Entry<String, CategoryStats>> select(
+            Map.Entry<String, CategoryStats>[] entries, int from, int to, int k) {
+
+        PriorityQueue<Map.Entry<String, CategoryStats>> heap = newHeap(k, to - from);
+        for (int i = from; i < to; i++) {
+            offer(heap, entries[i], k);
+        }
+        return heap;
+    }
+
+    /**
+     * The heap's head is the lowest ranked entry kept so far, so a better entry replaces it. It is
+     * sized for the entries it can actually hold, not for {@code k}, which may be close to the
+     * whole result.
+     */
+    private static PriorityQueue<Map.Entry<String, CategoryStats>> newHeap(int k, int candidates) {
+        return new PriorityQueue<>(Math.min(k, candidates) + 1, BY_REVENUE_DESC.reversed());
+    }
+
+    private static void offer(PriorityQueue<Map.Entry<String, CategoryStats>> heap,
+                              Map.Entry<String, CategoryStats> entry,
+                              int k) {
+        if (heap.size() < k) {
+            heap.add(entry);
+        } else if (BY_REVENUE_DESC.compare(entry, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map.Entry<String, CategoryStats>[] toArray(Map<String, CategoryStats> result) {
+        return result.entrySet().toArray(new Map.Entry[0]);
+    }
+}
@@ -2,31 +2,57 @@ package se.ifmo.mapreduce.runtime;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.ifmo.mapreduce.HashPartitioner;
+import se.ifmo.mapreduce.PartitionedMapContext;
+import se.ifmo.mapreduce.Partitioner;
 import se.ifmo.mapreduce.Reducer;
+import se.ifmo.mapreduce.SpillingMapContext;
 import se.ifmo.model.CategoryStats;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
 
 public class ReducePhaseRunner {
 
     private static final Logger logger = LoggerFactory.getLogger(ReducePhaseRunner.class);
 
     private final int threadsCount;
+    private final Partitioner<String> partitioner;
+    private final ExecutorService sharedExecutor;
 
     public ReducePhaseRunner(int threadsCount) {
+        this(threadsCount, new HashPartitioner<>());
+    }
+
+    public ReducePhaseRunner(int threadsCount, Partitioner<String> partitioner) {
+        this(threadsCount, partitioner, null);
+    }
+
+    /**
+     * Runs partition tasks on an executor owned by the caller (e.g. the fork/join pool used by the
+     * Map phase) instead of a pool created per call; the executor is not shut down here.
+     */
+    public ReducePhaseRunner(int threadsCount, ExecutorService executor) {
+        this(threadsCount, new HashPartitioner<>(), Objects.requireNonNull(executor, "executor must not be null"));
+    }
+
+    private ReducePhaseRunner(int threadsCount, Partitioner<String> partitioner, ExecutorService sharedExecutor) {
         if (threadsCount <= 0) {
             throw new IllegalArgumentException("threadsCount must be > 0");
         }
         this.threadsCount = threadsCount;
+        this.partitioner = Objects.requireNonNull(partitioner, "partitioner must not be null");
+        this.sharedExecutor = sharedExecutor;
     }
 
     public Map<String, CategoryStats> runReduce(Map<String, List<CategoryStats>> groupedData,
@@ -40,75 +66,147 @@ public class ReducePhaseRunner {
             return Map.of();
         }
 
-        List<String> keys = new ArrayList<>(groupedData.keySet());
-        int totalKeys = keys.size();
-        int chunkSize = calculateChunkSize(totalKeys, threadsCount);
+        List<Map<String, List<CategoryStats>>> partitions = partition(groupedData);
 
-        logger.info("ReducePhaseRunner: starting Reduce phase for {} keys, threadsCount={}, chunkSize={}",
-                totalKeys, threadsCount, chunkSize);
+        logger.info("ReducePhaseRunner: starting Reduce phase for {} keys in {} partitions, threadsCount={}",
+                groupedData.size(), partitions.size(), threadsCount);
 
-        ConcurrentHashMap<String, CategoryStats> result = new ConcurrentHashMap<>();
+        return reducePartitions(partitions.size(), partition -> reducePartition(partitions.get(partition), reducer));
+    }
 
-        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+    public Map<String, CategoryStats> runReduce(PartitionedMapContext<String, CategoryStats> context,
+                                                Reducer<String, CategoryStats, CategoryStats> reducer) {
 
-        try {
-            for (int start = 0; start < totalKeys; start += chunkSize) {
-                int end = Math.min(start + chunkSize, totalKeys);
-                List<String> chunkKeys = keys.subList(start, end);
+        Objects.requireNonNull(context, "context must not be null");
+        Objects.requireNonNull(reducer, "reducer must not be null");
+
+        logger.info("ReducePhaseRunner: starting Reduce phase for {} partitions, threadsCount={}",
+                context.getPartitionsCount(), threadsCount);
+
+        return reducePartitions(context.getPartitionsCount(),
+                partition -> reducePartition(context.getPartition(partition), reducer));
+    }
+
+    /**
+     * Reduces spilled map output; each partition streams its keys out of a k-way merge of the
+     * sorted runs instead of grouping them in memory.
+     */
+    public Map<String, CategoryStats> runReduce(SpillingMapContext<String, CategoryStats> context,
+                                                Reducer<String, CategoryStats, CategoryStats> reducer) {
+
+        Objects.requireNonNull(context, "context must not be null");
+        Objects.requireNonNull(reducer, "reducer must not be null");
+
+        logger.info("ReducePhaseRunner: starting Reduce phase for {} spilled partitions, threadsCount={}",
+                context.getPartitionsCount(), threadsCount);
+
+        return reducePartitions(context.getPartitionsCount(), partition -> {
+            Map<String, CategoryStats> output = new HashMap<>();
+            context.reducePartition(partition, (key, values) -> reduceKey(key, values, reducer), (key, reduced) -> {
+                if (reduced != null) {
+                    output.put(key, reduced);
+                }
+            });
+            return output;
+        });
+    }
+
+    private List<Map<String, List<CategoryStats>>> partition(Map<String, List<CategoryStats>> groupedData) {
+        List<Map<String, List<CategoryStats>>> partitions = new ArrayList<>(threadsCount);
+        for (int i = 0; i < threadsCount; i++) {
+            partitions.add(new HashMap<>());
+        }
+        for (Map.Entry<String, List<CategoryStats>> entry : groupedData.entrySet()) {
+            int partition = partitioner.getPartition(entry.getKey(), threadsCount);
+            partitions.get(partition).put(entry.getKey(), entry.getValue());
+        }
+        return partitions;
+    }
+
+    private Map<String, CategoryStats> reducePartitions(int partitionsCount,
+                                                        IntFunction<Map<String, CategoryStats>> partitionTask) {
+
+        List<Future<Map<String, CategoryStats>>> outputs = new ArrayList<>(partitionsCount);
 
-                Runnable task = createReduceTask(chunkKeys, groupedData, reducer, result);
-                executor.submit(task);
+        boolean ownsExecutor = sharedExecutor == null;
+        ExecutorService executor = ownsExecutor
+                ? Executors.newFixedThreadPool(Math.min(threadsCount, partitionsCount))
+                : sharedExecutor;
+
+        try {
+            for (int partition = 0; partition < partitionsCount; partition++) {
+                int current = partition;
+                outputs.add(executor.submit(() -> partitionTask.apply(current)));
             }
         } finally {
-            executor.shutdown();
-            try {
-                boolean finished = executor.awaitTermination(5, TimeUnit.MINUTES);
-                if (!finished) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-                Thread.currentThread().interrupt();
+            if (ownsExecutor) {
+                shutdown(executor);
             }
         }
 
+        Map<String, CategoryStats> result = new HashMap<>();
+        for (Future<Map<String, CategoryStats>> output : outputs) {
+            result.putAll(collect(output));
+        }
+
         logger.info("ReducePhaseRunner: Reduce phase completed, result size={}", result.size());
         return result;
     }
 
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            boolean finished = executor.awaitTermination(5, TimeUnit.MINUTES);
+            if (!finished) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
 
-    private Runnable createReduceTask(List<String> chunkKeys,
-                                      Map<String, List<CategoryStats>> groupedData,
-                                      Reducer<String, CategoryStats, CategoryStats> reducer,
-                                      ConcurrentHashMap<String, CategoryStats> result) {
+    private Map<String, CategoryStats> reducePartition(Map<String, List<CategoryStats>> partitionData,
+                                                       Reducer<String, CategoryStats, CategoryStats> reducer) {
 
-        return () -> {
-            for (String key : chunkKeys) {
-                if (key == null) {
-                    continue;
-                }
-                List<CategoryStats> values = groupedData.get(key);
-                if (values == null || values.isEmpty()) {
-                    continue;
-                }
+        Map<String, CategoryStats> output = new HashMap<>();
+        for (Map.Entry<String, List<CategoryStats>> entry : partitionData.entrySet()) {
+            String key = entry.getKey();
+            List<CategoryStats> values = entry.getValue();
+            if (key == null || values == null || values.isEmpty()) {
+                continue;
+            }
 
-                try {
-                    CategoryStats reduced = reducer.reduce(key, values);
-                    if (reduced != null) {
-                        result.put(key, reduced);
-                    }
-                } catch (RuntimeException e) {
-                    logger.error("ReducePhaseRunner: error while reducing key '{}'", key, e);
-                }
+            CategoryStats reduced = reduceKey(key, values, reducer);
+            if (reduced != null) {
+                output.put(key, reduced);
             }
-        };
+        }
+        return output;
+    }
+
+    private static CategoryStats reduceKey(String key,
+                                           Iterable<CategoryStats> values,
+                                           Reducer<String, CategoryStats, CategoryStats> reducer) {
+        try {
+            return reducer.reduce(key, values);
+        } catch (RuntimeException e) {
+            logger.error("ReducePhaseRunner: error while reducing key '{}'", key, e);
+            return null;
+        }
     }
 
-    private static int calculateChunkSize(int totalKeys, int threadsCount) {
-        if (totalKeys <= 0) {
-            return 1;
+    private static Map<String, CategoryStats> collect(Future<Map<String, CategoryStats>> output) {
+        try {
+            return output.get(5, TimeUnit.MINUTES);
+        } catch (TimeoutException e) {
+            output.cancel(true);
+            throw new IllegalStateException("ReducePhaseRunner: reduce partition did not finish in time", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ReducePhaseRunner: reduce partition failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ReducePhaseRunner: interrupted while collecting reduce output", e);
         }
-        int size = (int) Math.ceil(totalKeys / (double) threadsCount);
-        return Math.max(1, size);
     }
 }
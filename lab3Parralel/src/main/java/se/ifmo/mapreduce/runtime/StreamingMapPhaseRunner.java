@@ -0,0 +1,200 @@
+package se.ifmo.mapreduce.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.ifmo.io.SalesCsvReader;
+import se.ifmo.mapreduce.Combiner;
+import se.ifmo.mapreduce.CombiningMapContext;
+import se.ifmo.mapreduce.MapContext;
+import se.ifmo.mapreduce.Mapper;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.SalesRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map phase that reads CSV files line by line and hands batches of raw lines to map workers
+ * through a bounded queue, so reading, parsing and mapping overlap and at most
+ * {@code queueCapacity + threadsCount} batches are held in memory at any time.
+ */
+public class StreamingMapPhaseRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingMapPhaseRunner.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int DEFAULT_QUEUE_BATCHES_PER_THREAD = 4;
+
+    private static final List<String> END_OF_INPUT = List.of();
+
+    private final int threadsCount;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    public StreamingMapPhaseRunner(int threadsCount) {
+        this(threadsCount, DEFAULT_BATCH_SIZE, threadsCount * DEFAULT_QUEUE_BATCHES_PER_THREAD);
+    }
+
+    public StreamingMapPhaseRunner(int threadsCount, int batchSize, int queueCapacity) {
+        if (threadsCount <= 0) {
+            throw new IllegalArgumentException("threadsCount must be > 0");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be > 0");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be > 0");
+        }
+        this.threadsCount = threadsCount;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void run(List<Path> files,
+                    Mapper<SalesRecord, String, CategoryStats> mapper,
+                    MapContext<String, CategoryStats> context) throws IOException, InterruptedException {
+        run(files, mapper, null, context);
+    }
+
+    public void run(List<Path> files,
+                    Mapper<SalesRecord, String, CategoryStats> mapper,
+                    Combiner<String, CategoryStats> combiner,
+                    MapContext<String, CategoryStats> context) throws IOException, InterruptedException {
+
+        Objects.requireNonNull(files, "files must not be null");
+        Objects.requireNonNull(mapper, "mapper must not be null");
+        Objects.requireNonNull(context, "context must not be null");
+
+        if (files.isEmpty()) {
+            logger.info("StreamingMapPhaseRunner: no files to process, skipping Map phase");
+            return;
+        }
+
+        logger.info("StreamingMapPhaseRunner: starting Map phase for {} files, threadsCount={}, batchSize={}, queueCapacity={}, combiner={}",
+                files.size(), threadsCount, batchSize, queueCapacity, combiner != null);
+
+        BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        List<Future<?>> workers = new ArrayList<>(threadsCount);
+
+        try {
+            for (int i = 0; i < threadsCount; i++) {
+                workers.add(executor.submit(createMapWorker(queue, mapper, combiner, context)));
+            }
+
+            for (Path file : files) {
+                logger.info("StreamingMapPhaseRunner: streaming CSV file: {}", file);
+                readFile(file, queue, workers);
+            }
+        } finally {
+            for (int i = 0; i < threadsCount; i++) {
+                if (!enqueue(END_OF_INPUT, queue, workers)) {
+                    break;
+                }
+            }
+            executor.shutdown();
+            try {
+                boolean finished = executor.awaitTermination(5, TimeUnit.MINUTES);
+                if (!finished) {
+                    logger.warn("StreamingMapPhaseRunner: tasks did not finish in time, forcing shutdownNow()");
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                logger.warn("StreamingMapPhaseRunner: interrupted while awaiting termination, forcing shutdownNow()", e);
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        logger.info("StreamingMapPhaseRunner: Map phase completed");
+    }
+
+    private void readFile(Path file,
+                          BlockingQueue<List<String>> queue,
+                          List<Future<?>> workers) throws IOException, InterruptedException {
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch.add(line);
+                if (batch.size() == batchSize) {
+                    publish(batch, queue, workers);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                publish(batch, queue, workers);
+            }
+        }
+    }
+
+    private static void publish(List<String> batch,
+                                BlockingQueue<List<String>> queue,
+                                List<Future<?>> workers) throws InterruptedException {
+
+        if (!enqueue(batch, queue, workers)) {
+            throw new IllegalStateException("StreamingMapPhaseRunner: all map workers have stopped");
+        }
+    }
+
+    private static boolean enqueue(List<String> batch,
+                                   BlockingQueue<List<String>> queue,
+                                   List<Future<?>> workers) throws InterruptedException {
+
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (workers.stream().allMatch(Future::isDone)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Runnable createMapWorker(BlockingQueue<List<String>> queue,
+                                     Mapper<SalesRecord, String, CategoryStats> mapper,
+                                     Combiner<String, CategoryStats> combiner,
+                                     MapContext<String, CategoryStats> context) {
+
+        return () -> {
+            MapContext<String, CategoryStats> workerOutput = context.taskContext();
+            CombiningMapContext<String, CategoryStats> localContext =
+                    combiner != null ? new CombiningMapContext<>(combiner) : null;
+            MapContext<String, CategoryStats> workerContext = localContext != null ? localContext : workerOutput;
+
+            try {
+                List<String> batch;
+                while ((batch = queue.take()) != END_OF_INPUT) {
+                    for (String line : batch) {
+                        SalesRecord record = SalesCsvReader.parseLine(line);
+                        if (record == null) {
+                            continue;
+                        }
+                        try {
+                            mapper.map(record, workerContext);
+                        } catch (RuntimeException e) {
+                            logger.error("StreamingMapPhaseRunner: error while mapping record {}", record, e);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (localContext != null) {
+                    localContext.flushTo(workerOutput);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package se.ifmo.mapreduce.sales;
+
+import se.ifmo.mapreduce.MapContext;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.CategoryStatsAdder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link MapContext} for commutative sums: every write is folded straight into a per-key
+ * {@link CategoryStatsAdder}, so no value lists are built and map tasks share no lock. The Reduce
+ * phase degenerates to summing each key's cells with {@link #getAggregatedData()}.
+ */
+public class AggregatingMapContext<K> implements MapContext<K, CategoryStats> {
+
+    private final ConcurrentHashMap<K, CategoryStatsAdder> adders = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(K key, CategoryStats value) {
+        CategoryStatsAdder adder = adders.get(key);
+        if (adder == null) {
+            adder = adders.computeIfAbsent(key, k -> new CategoryStatsAdder());
+        }
+        adder.add(value);
+    }
+
+    /**
+     * Returns every key with its single, already aggregated value, so the context can still be fed
+     * to a regular Reduce phase.
+     */
+    @Override
+    public Map<K, List<CategoryStats>> getGroupedData() {
+        Map<K, List<CategoryStats>> grouped = new HashMap<>();
+        adders.forEach((key, adder) -> grouped.put(key, List.of(adder.sum())));
+        return grouped;
+    }
+
+    public Map<K, CategoryStats> getAggregatedData() {
+        Map<K, CategoryStats> aggregated = new HashMap<>();
+        adders.forEach((key, adder) -> aggregated.put(key, adder.sum()));
+        return aggregated;
+    }
+}
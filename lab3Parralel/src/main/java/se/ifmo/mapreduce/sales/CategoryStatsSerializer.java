@@ -0,0 +1,52 @@
+package se.ifmo.mapreduce.sales;
+
+import se.ifmo.mapreduce.Serializer;
+import se.ifmo.model.CategoryStats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Encodes revenue as fixed-point units when possible and as an unscaled {@link BigInteger} plus
+ * scale otherwise, followed by the total quantity.
+ */
+public final class CategoryStatsSerializer implements Serializer<CategoryStats> {
+
+    private static final byte FIXED_POINT = 0;
+    private static final byte DECIMAL = 1;
+
+    @Override
+    public void write(DataOutput out, CategoryStats stats) throws IOException {
+        if (stats.isFixedPoint()) {
+            out.writeByte(FIXED_POINT);
+            out.writeLong(stats.revenueUnits());
+        } else {
+            BigDecimal revenue = stats.totalRevenue();
+            byte[] unscaled = revenue.unscaledValue().toByteArray();
+            out.writeByte(DECIMAL);
+            out.writeInt(revenue.scale());
+            out.writeInt(unscaled.length);
+            out.write(unscaled);
+        }
+        out.writeLong(stats.totalQuantity());
+    }
+
+    @Override
+    public CategoryStats read(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        if (kind == FIXED_POINT) {
+            long units = in.readLong();
+            return CategoryStats.ofUnits(units, in.readLong());
+        }
+        if (kind == DECIMAL) {
+            int scale = in.readInt();
+            byte[] unscaled = new byte[in.readInt()];
+            in.readFully(unscaled);
+            return CategoryStats.of(new BigDecimal(new BigInteger(unscaled), scale), in.readLong());
+        }
+        throw new IOException("Unknown revenue encoding " + kind);
+    }
+}
@@ -3,6 +3,7 @@ package se.ifmo.mapreduce.sales;
 import se.ifmo.mapreduce.MapContext;
 import se.ifmo.mapreduce.Mapper;
 import se.ifmo.model.CategoryStats;
+import se.ifmo.model.FixedPointRevenue;
 import se.ifmo.model.SalesRecord;
 
 import java.math.BigDecimal;
@@ -20,9 +21,11 @@ public class SalesMapper implements Mapper<SalesRecord, String, CategoryStats> {
         BigDecimal price = input.price();
         int quantity = input.quantity();
 
-        BigDecimal revenue = price.multiply(BigDecimal.valueOf(quantity));
+        long revenueUnits = FixedPointRevenue.multiply(FixedPointRevenue.toUnits(price), quantity);
 
-        CategoryStats stats = CategoryStats.of(revenue, quantity);
+        CategoryStats stats = revenueUnits != FixedPointRevenue.NOT_REPRESENTABLE
+                ? CategoryStats.ofUnits(revenueUnits, quantity)
+                : CategoryStats.of(price.multiply(BigDecimal.valueOf(quantity)), quantity);
 
         context.write(category, stats);
     }
@@ -1,23 +1,29 @@
 package se.ifmo.mapreduce.sales;
 
+import se.ifmo.mapreduce.Combiner;
 import se.ifmo.mapreduce.Reducer;
 import se.ifmo.model.CategoryStats;
+import se.ifmo.model.CategoryStatsAccumulator;
 
-public class SalesReducer implements Reducer<String, CategoryStats, CategoryStats> {
+public class SalesReducer implements Reducer<String, CategoryStats, CategoryStats>,
+        Combiner<String, CategoryStats> {
 
     @Override
     public CategoryStats reduce(String key, Iterable<CategoryStats> values) {
-        CategoryStats total = CategoryStats.empty();
         if (values == null) {
-            return total;
+            return CategoryStats.empty();
         }
 
+        CategoryStatsAccumulator total = new CategoryStatsAccumulator();
         for (CategoryStats stats : values) {
-            if (stats != null) {
-                total = total.add(stats);
-            }
+            total.add(stats);
         }
 
-        return total;
+        return total.toStats();
+    }
+
+    @Override
+    public CategoryStats combine(String key, Iterable<CategoryStats> values) {
+        return reduce(key, values);
     }
 }
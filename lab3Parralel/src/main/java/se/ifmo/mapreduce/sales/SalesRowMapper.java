@@ -0,0 +1,28 @@
+package se.ifmo.mapreduce.sales;
+
+import se.ifmo.mapreduce.MapContext;
+import se.ifmo.mapreduce.Mapper;
+import se.ifmo.model.CategoryStats;
+import se.ifmo.model.FixedPointRevenue;
+import se.ifmo.model.SalesRowCursor;
+
+import java.math.BigDecimal;
+
+/**
+ * {@link SalesMapper} for rows of a {@code SalesColumnStore}: the price is already in fixed-point
+ * units and the category name comes from the store's dictionary, so no row data is allocated.
+ */
+public class SalesRowMapper implements Mapper<SalesRowCursor, String, CategoryStats> {
+
+    @Override
+    public void map(SalesRowCursor row, MapContext<String, CategoryStats> context) {
+        int quantity = row.quantity();
+        long revenueUnits = FixedPointRevenue.multiply(row.priceUnits(), quantity);
+
+        CategoryStats stats = revenueUnits != FixedPointRevenue.NOT_REPRESENTABLE
+                ? CategoryStats.ofUnits(revenueUnits, quantity)
+                : CategoryStats.of(row.price().multiply(BigDecimal.valueOf(quantity)), quantity);
+
+        context.write(row.category(), stats);
+    }
+}
@@ -0,0 +1,44 @@
+package se.ifmo.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hashing and comparison of byte ranges inside a {@link ByteBuffer}, so category bytes of a parsed
+ * row can be looked up in caches and dictionaries without copying them out first.
+ */
+public final class ByteRanges {
+
+    private ByteRanges() {
+    }
+
+    /**
+     * Hash of the bytes in {@code [offset, offset + length)}, with the high bits mixed into the low
+     * ones for power-of-two tables.
+     */
+    public static int hash(ByteBuffer source, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + source.get(offset + i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    public static int hash(byte[] key) {
+        return hash(ByteBuffer.wrap(key), 0, key.length);
+    }
+
+    /**
+     * Whether {@code key} holds exactly the bytes in {@code [offset, offset + length)} of the buffer.
+     */
+    public static boolean matches(byte[] key, ByteBuffer source, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != source.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
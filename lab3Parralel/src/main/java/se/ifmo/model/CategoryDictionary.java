@@ -0,0 +1,134 @@
+package se.ifmo.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Thread-safe mapping of category names to dense ids {@code 0..size()-1}, so the hot path can key
+ * on an {@code int} instead of a {@code String}. Ids are assigned in order of first appearance.
+ *
+ * <p>Lookups go straight from the UTF-8 bytes of a parsed row to the id: readers probe an
+ * immutable open-addressing table through a volatile reference without locking or allocating,
+ * and only a category seen for the first time takes the lock and publishes a copied table.
+ */
+public final class CategoryDictionary {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile Table table =
+            new Table(new byte[INITIAL_CAPACITY][], new int[INITIAL_CAPACITY], new String[0], new byte[0][]);
+
+    public int idOf(String name) {
+        Objects.requireNonNull(name, "name must not be null");
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return idOf(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Returns the id of the category stored as UTF-8 in {@code [offset, offset + length)} of the
+     * buffer, registering it if it is new.
+     */
+    public int idOf(ByteBuffer source, int offset, int length) {
+        int hash = ByteRanges.hash(source, offset, length);
+        int id = table.find(source, offset, length, hash);
+        return id >= 0 ? id : register(source, offset, length, hash);
+    }
+
+    public String nameOf(int id) {
+        String[] names = table.names;
+        if (id < 0 || id >= names.length) {
+            throw new IllegalArgumentException("Unknown category id " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * Returns the category bytes exactly as they were registered, which need not be valid UTF-8.
+     * The array is shared with the dictionary and must not be modified.
+     */
+    public byte[] bytesOf(int id) {
+        byte[][] nameBytes = table.nameBytes;
+        if (id < 0 || id >= nameBytes.length) {
+            throw new IllegalArgumentException("Unknown category id " + id);
+        }
+        return nameBytes[id];
+    }
+
+    public int size() {
+        return table.names.length;
+    }
+
+    private synchronized int register(ByteBuffer source, int offset, int length, int hash) {
+        Table current = table;
+        int existing = current.find(source, offset, length, hash);
+        if (existing >= 0) {
+            return existing;
+        }
+
+        byte[] key = new byte[length];
+        source.get(offset, key);
+        int id = current.names.length;
+        String[] names = Arrays.copyOf(current.names, id + 1);
+        names[id] = new String(key, StandardCharsets.UTF_8);
+        byte[][] nameBytes = Arrays.copyOf(current.nameBytes, id + 1);
+        nameBytes[id] = key;
+
+        int capacity = current.keys.length;
+        while ((id + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        Table next = new Table(new byte[capacity][], new int[capacity], names, nameBytes);
+        for (int i = 0; i < current.keys.length; i++) {
+            if (current.keys[i] != null) {
+                next.insert(current.keys[i], current.ids[i]);
+            }
+        }
+        next.insert(key, id);
+
+        table = next;
+        return id;
+    }
+
+    /**
+     * Linear-probing table, never modified after it is published.
+     */
+    private static final class Table {
+
+        private final byte[][] keys;
+        private final int[] ids;
+        private final String[] names;
+        private final byte[][] nameBytes;
+
+        Table(byte[][] keys, int[] ids, String[] names, byte[][] nameBytes) {
+            this.keys = keys;
+            this.ids = ids;
+            this.names = names;
+            this.nameBytes = nameBytes;
+        }
+
+        int find(ByteBuffer source, int offset, int length, int hash) {
+            int mask = keys.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                byte[] key = keys[slot];
+                if (key == null) {
+                    return -1;
+                }
+                if (ByteRanges.matches(key, source, offset, length)) {
+                    return ids[slot];
+                }
+            }
+        }
+
+        void insert(byte[] key, int id) {
+            int mask = keys.length - 1;
+            int slot = ByteRanges.hash(key) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            ids[slot] = id;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package se.ifmo.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thread-confined running totals indexed by {@link CategoryDictionary} id: folding a row is an
+ * array access instead of a hash map lookup. Category names are only resolved by {@link #decode}.
+ */
+public final class CategoryIdAccumulators {
+
+    private CategoryStatsAccumulator[] accumulators = new CategoryStatsAccumulator[32];
+
+    public CategoryStatsAccumulator forId(int categoryId) {
+        if (categoryId >= accumulators.length) {
+            accumulators = Arrays.copyOf(accumulators, Math.max(categoryId + 1, accumulators.length * 2));
+        }
+        CategoryStatsAccumulator accumulator = accumulators[categoryId];
+        if (accumulator == null) {
+            accumulator = new CategoryStatsAccumulator();
+            accumulators[categoryId] = accumulator;
+        }
+        return accumulator;
+    }
+
+    public void mergeInto(CategoryIdAccumulators target) {
+        for (int id = 0; id < accumulators.length; id++) {
+            if (accumulators[id] != null) {
+                target.forId(id).add(accumulators[id].toStats());
+            }
+        }
+    }
+
+    public Map<String, CategoryStats> decode(CategoryDictionary dictionary) {
+        Map<String, CategoryStats> result = new HashMap<>();
+        for (int id = 0; id < accumulators.length; id++) {
+            if (accumulators[id] != null) {
+                result.put(dictionary.nameOf(id), accumulators[id].toStats());
+            }
+        }
+        return result;
+    }
+}
@@ -3,35 +3,91 @@ package se.ifmo.model;
 import java.math.BigDecimal;
 import java.util.Objects;
 
-public record CategoryStats(BigDecimal totalRevenue, long totalQuantity) {
+/**
+ * Aggregated revenue and quantity of a category. Revenue is kept as exact fixed-point
+ * {@link FixedPointRevenue} units and only falls back to {@link BigDecimal} when the
+ * value does not fit, so summing stats normally allocates no big decimals.
+ */
+public final class CategoryStats {
 
-    public CategoryStats {
+    private static final CategoryStats EMPTY = new CategoryStats(0L, null, 0L);
+
+    private final long revenueUnits;
+    private final BigDecimal revenueDecimal;
+    private final long totalQuantity;
+
+    private CategoryStats(long revenueUnits, BigDecimal revenueDecimal, long totalQuantity) {
+        this.revenueUnits = revenueUnits;
+        this.revenueDecimal = revenueDecimal;
+        this.totalQuantity = totalQuantity;
+    }
+
+    public static CategoryStats of(BigDecimal totalRevenue, long totalQuantity) {
         if (totalRevenue == null) {
             throw new IllegalArgumentException("totalRevenue must not be null");
         }
+        long units = FixedPointRevenue.toUnits(totalRevenue);
+        if (units == FixedPointRevenue.NOT_REPRESENTABLE) {
+            return new CategoryStats(0L, totalRevenue, totalQuantity);
+        }
+        return new CategoryStats(units, null, totalQuantity);
     }
 
-    public static CategoryStats of(BigDecimal totalRevenue, long totalQuantity) {
-        return new CategoryStats(totalRevenue, totalQuantity);
+    public static CategoryStats ofUnits(long revenueUnits, long totalQuantity) {
+        if (revenueUnits == FixedPointRevenue.NOT_REPRESENTABLE) {
+            throw new IllegalArgumentException("revenueUnits must be representable");
+        }
+        return new CategoryStats(revenueUnits, null, totalQuantity);
     }
 
     public static CategoryStats empty() {
-        return new CategoryStats(BigDecimal.ZERO, 0L);
+        return EMPTY;
+    }
+
+    public BigDecimal totalRevenue() {
+        return revenueDecimal != null ? revenueDecimal : FixedPointRevenue.toDecimal(revenueUnits);
+    }
+
+    public long totalQuantity() {
+        return totalQuantity;
+    }
+
+    public boolean isFixedPoint() {
+        return revenueDecimal == null;
+    }
+
+    public long revenueUnits() {
+        if (revenueDecimal != null) {
+            throw new IllegalStateException("Revenue does not fit fixed-point units: " + revenueDecimal);
+        }
+        return revenueUnits;
     }
 
     public CategoryStats add(CategoryStats other) {
         if (other == null) {
             return this;
         }
-        BigDecimal newRevenue = this.totalRevenue.add(other.totalRevenue);
         long newQuantity = this.totalQuantity + other.totalQuantity;
-        return new CategoryStats(newRevenue, newQuantity);
+        if (this.isFixedPoint() && other.isFixedPoint()) {
+            long newUnits = FixedPointRevenue.add(this.revenueUnits, other.revenueUnits);
+            if (newUnits != FixedPointRevenue.NOT_REPRESENTABLE) {
+                return new CategoryStats(newUnits, null, newQuantity);
+            }
+        }
+        return of(this.totalRevenue().add(other.totalRevenue()), newQuantity);
+    }
+
+    public static int compareByRevenue(CategoryStats left, CategoryStats right) {
+        if (left.isFixedPoint() && right.isFixedPoint()) {
+            return Long.compare(left.revenueUnits, right.revenueUnits);
+        }
+        return left.totalRevenue().compareTo(right.totalRevenue());
     }
 
     @Override
     public String toString() {
         return "CategoryStats{" +
-                "totalRevenue=" + totalRevenue +
+                "totalRevenue=" + totalRevenue() +
                 ", totalQuantity=" + totalQuantity +
                 '}';
     }
@@ -42,11 +98,14 @@ public record CategoryStats(BigDecimal totalRevenue, long totalQuantity) {
         if (!(o instanceof CategoryStats)) return false;
         CategoryStats that = (CategoryStats) o;
         return totalQuantity == that.totalQuantity &&
-                totalRevenue.compareTo(that.totalRevenue) == 0;
+                compareByRevenue(this, that) == 0;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(totalRevenue.stripTrailingZeros(), totalQuantity);
+        if (isFixedPoint()) {
+            return Objects.hash(revenueUnits, totalQuantity);
+        }
+        return Objects.hash(revenueDecimal.stripTrailingZeros(), totalQuantity);
     }
 }
@@ -0,0 +1,57 @@
+package se.ifmo.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Mutable, thread-confined running total of {@link CategoryStats}. Reducers and combiners
+ * fold values into one accumulator in place and freeze it with {@link #toStats()} at the end.
+ */
+public final class CategoryStatsAccumulator {
+
+    private long revenueUnits;
+    private BigDecimal revenueDecimal;
+    private long totalQuantity;
+
+    public CategoryStatsAccumulator add(CategoryStats stats) {
+        if (stats == null) {
+            return this;
+        }
+        if (stats.isFixedPoint()) {
+            return addUnits(stats.revenueUnits(), stats.totalQuantity());
+        }
+        revenueDecimal = currentRevenue().add(stats.totalRevenue());
+        totalQuantity += stats.totalQuantity();
+        return this;
+    }
+
+    public CategoryStatsAccumulator addUnits(long units, long quantity) {
+        if (revenueDecimal == null) {
+            long sum = FixedPointRevenue.add(revenueUnits, units);
+            if (sum != FixedPointRevenue.NOT_REPRESENTABLE) {
+                revenueUnits = sum;
+                totalQuantity += quantity;
+                return this;
+            }
+        }
+        revenueDecimal = currentRevenue().add(FixedPointRevenue.toDecimal(units));
+        totalQuantity += quantity;
+        return this;
+    }
+
+    public void reset() {
+        revenueUnits = 0L;
+        revenueDecimal = null;
+        totalQuantity = 0L;
+    }
+
+    public CategoryStats toStats() {
+        if (revenueDecimal != null) {
+            return CategoryStats.of(revenueDecimal, totalQuantity);
+        }
+        return CategoryStats.ofUnits(revenueUnits, totalQuantity);
+    }
+
+    private BigDecimal currentRevenue() {
+        return revenueDecimal != null ? revenueDecimal : FixedPointRevenue.toDecimal(revenueUnits);
+    }
+}
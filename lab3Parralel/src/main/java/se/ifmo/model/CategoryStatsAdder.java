@@ -0,0 +1,136 @@
+package se.ifmo.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe running total of {@link CategoryStats} in the spirit of {@link java.util.concurrent.atomic.LongAdder},
+ * but exact: revenue stays in {@link FixedPointRevenue} units. Writers CAS a single base cell until
+ * they first collide, after which each thread folds into the padded cell picked by its probe.
+ * Probes are handed out in thread order, so the first threads get cells of their own and later
+ * ones share. {@link #sum()} adds the cells up. Amounts that do not fit a cell go to a locked
+ * {@link CategoryStatsAccumulator}.
+ */
+public final class CategoryStatsAdder {
+
+    private static final int CELLS_COUNT = cellsCountFor(Runtime.getRuntime().availableProcessors());
+
+    // units and quantity of a cell share one 64-byte line, cells never do
+    private static final int CELL_STRIDE = 8;
+
+    private static final AtomicInteger NEXT_PROBE = new AtomicInteger();
+
+    private static final ThreadLocal<Integer> PROBE = ThreadLocal.withInitial(NEXT_PROBE::getAndIncrement);
+
+    private static final VarHandle BASE_UNITS;
+    private static final VarHandle BASE_QUANTITY;
+    private static final VarHandle CELLS;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            BASE_UNITS = lookup.findVarHandle(CategoryStatsAdder.class, "baseUnits", long.class);
+            BASE_QUANTITY = lookup.findVarHandle(CategoryStatsAdder.class, "baseQuantity", long.class);
+            CELLS = lookup.findVarHandle(CategoryStatsAdder.class, "cells", AtomicLongArray.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long baseUnits;
+    private volatile long baseQuantity;
+    private volatile AtomicLongArray cells;
+
+    private CategoryStatsAccumulator overflow;
+
+    public void add(CategoryStats stats) {
+        if (stats == null) {
+            return;
+        }
+        if (stats.isFixedPoint()) {
+            addUnits(stats.revenueUnits(), stats.totalQuantity());
+        } else {
+            addOverflow(stats);
+        }
+    }
+
+    public void addUnits(long units, long quantity) {
+        AtomicLongArray currentCells = cells;
+        if (currentCells == null) {
+            long current = baseUnits;
+            long sum = FixedPointRevenue.add(current, units);
+            if (sum == FixedPointRevenue.NOT_REPRESENTABLE) {
+                addOverflow(CategoryStats.ofUnits(units, quantity));
+                return;
+            }
+            if (BASE_UNITS.compareAndSet(this, current, sum)) {
+                BASE_QUANTITY.getAndAdd(this, quantity);
+                return;
+            }
+            currentCells = inflate();
+        }
+
+        int index = cellIndex();
+        while (true) {
+            long current = currentCells.get(index);
+            long sum = FixedPointRevenue.add(current, units);
+            if (sum == FixedPointRevenue.NOT_REPRESENTABLE) {
+                addOverflow(CategoryStats.ofUnits(units, quantity));
+                return;
+            }
+            if (currentCells.compareAndSet(index, current, sum)) {
+                currentCells.getAndAdd(index + 1, quantity);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the base, all cells and the overflow up. Exact once writers have stopped; concurrent
+     * writes may or may not be included.
+     */
+    public CategoryStats sum() {
+        CategoryStatsAccumulator total = new CategoryStatsAccumulator();
+        total.addUnits(baseUnits, baseQuantity);
+
+        AtomicLongArray currentCells = cells;
+        if (currentCells != null) {
+            for (int index = 0; index < currentCells.length(); index += CELL_STRIDE) {
+                total.addUnits(currentCells.get(index), currentCells.get(index + 1));
+            }
+        }
+
+        synchronized (this) {
+            if (overflow != null) {
+                total.add(overflow.toStats());
+            }
+        }
+        return total.toStats();
+    }
+
+    private AtomicLongArray inflate() {
+        AtomicLongArray created = new AtomicLongArray(CELLS_COUNT * CELL_STRIDE);
+        if (CELLS.compareAndSet(this, null, created)) {
+            return created;
+        }
+        return cells;
+    }
+
+    private synchronized void addOverflow(CategoryStats stats) {
+        if (overflow == null) {
+            overflow = new CategoryStatsAccumulator();
+        }
+        overflow.add(stats);
+    }
+
+    private static int cellIndex() {
+        // consecutive probes, so up to CELLS_COUNT threads land on distinct cells
+        return (PROBE.get() & (CELLS_COUNT - 1)) * CELL_STRIDE;
+    }
+
+    private static int cellsCountFor(int processors) {
+        return Integer.highestOneBit(Math.max(1, processors - 1)) << 1;
+    }
+}
@@ -0,0 +1,88 @@
+package se.ifmo.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Exact fixed-point arithmetic for money amounts stored as {@code long} units of
+ * {@code 10^-SCALE}, i.e. thousandths of a cent. Operations that would lose precision
+ * or overflow return {@link #NOT_REPRESENTABLE} so callers can fall back to {@link BigDecimal}.
+ */
+public final class FixedPointRevenue {
+
+    public static final int SCALE = 5;
+
+    public static final long NOT_REPRESENTABLE = Long.MIN_VALUE;
+
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+            10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    private FixedPointRevenue() {
+    }
+
+    /**
+     * Converts {@code unscaled * 10^-scale} to units; digits below {@code 10^-SCALE} must be zeros.
+     */
+    public static long toUnits(long unscaled, int scale) {
+        while (scale > SCALE && unscaled % 10 == 0) {
+            unscaled /= 10;
+            scale--;
+        }
+        if (scale > SCALE || SCALE - scale > MAX_LONG_DIGITS) {
+            return NOT_REPRESENTABLE;
+        }
+        return multiply(unscaled, POWERS_OF_TEN[SCALE - scale]);
+    }
+
+    public static long toUnits(BigDecimal value) {
+        if (value.scale() > SCALE) {
+            value = value.stripTrailingZeros();
+            if (value.scale() > SCALE) {
+                return NOT_REPRESENTABLE;
+            }
+        }
+        int digits = value.precision() - value.scale() + SCALE;
+        if (digits > MAX_LONG_DIGITS) {
+            if (digits > MAX_LONG_DIGITS + 1) {
+                return NOT_REPRESENTABLE;
+            }
+            // 19 digits fit a long only below 2^63
+            BigInteger units = value.movePointRight(SCALE).toBigInteger();
+            return units.bitLength() < Long.SIZE ? units.longValue() : NOT_REPRESENTABLE;
+        }
+        return value.movePointRight(SCALE).longValue();
+    }
+
+    public static BigDecimal toDecimal(long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    public static long multiply(long units, long factor) {
+        if (units == NOT_REPRESENTABLE) {
+            return NOT_REPRESENTABLE;
+        }
+        long high = Math.multiplyHigh(units, factor);
+        long low = units * factor;
+        if ((high != 0 || low < 0) && (high != -1 || low >= 0)) {
+            return NOT_REPRESENTABLE;
+        }
+        return low;
+    }
+
+    public static long add(long left, long right) {
+        if (left == NOT_REPRESENTABLE || right == NOT_REPRESENTABLE) {
+            return NOT_REPRESENTABLE;
+        }
+        long sum = left + right;
+        if (((left ^ sum) & (right ^ sum)) < 0) {
+            return NOT_REPRESENTABLE;
+        }
+        return sum;
+    }
+}
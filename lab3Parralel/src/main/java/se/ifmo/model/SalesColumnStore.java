@@ -0,0 +1,172 @@
+package se.ifmo.model;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Parsed sales rows kept off-heap in columnar form: every {@link Chunk} is one direct buffer
+ * holding the transaction id, product id and fixed-point price columns ({@code long}) followed by
+ * the dictionary-encoded category and quantity columns ({@code int}), 32 bytes per row and no
+ * per-row objects. Prices that do not fit {@link FixedPointRevenue} are kept on-heap per chunk.
+ *
+ * <p>Chunks are filled by an {@link Appender} and are immutable afterwards, so a store can be
+ * scanned by any number of threads through their own {@link SalesRowCursor}s.
+ */
+public final class SalesColumnStore {
+
+    public static final int CHUNK_ROWS = 16 * 1024;
+
+    private final CategoryDictionary dictionary;
+    private final List<Chunk> chunks;
+    private final long rowsCount;
+
+    public SalesColumnStore(CategoryDictionary dictionary, List<Chunk> chunks) {
+        this.dictionary = Objects.requireNonNull(dictionary, "dictionary must not be null");
+        this.chunks = List.copyOf(chunks);
+        this.rowsCount = this.chunks.stream().mapToLong(Chunk::size).sum();
+    }
+
+    public CategoryDictionary dictionary() {
+        return dictionary;
+    }
+
+    public List<Chunk> chunks() {
+        return chunks;
+    }
+
+    public long rowsCount() {
+        return rowsCount;
+    }
+
+    public long offHeapBytes() {
+        return chunks.stream().mapToLong(chunk -> chunk.data.capacity()).sum();
+    }
+
+    public SalesRowCursor cursor() {
+        return new SalesRowCursor(dictionary);
+    }
+
+    public static final class Chunk {
+
+        private static final int ROW_BYTES = 3 * Long.BYTES + 2 * Integer.BYTES;
+
+        private final ByteBuffer data;
+        private final int capacity;
+        private final int productIdOffset;
+        private final int priceOffset;
+        private final int categoryOffset;
+        private final int quantityOffset;
+        private final Map<Integer, BigDecimal> decimalPrices = new HashMap<>();
+        private int size;
+
+        private Chunk(int capacity) {
+            this.data = ByteBuffer.allocateDirect(capacity * ROW_BYTES).order(ByteOrder.nativeOrder());
+            this.capacity = capacity;
+            this.productIdOffset = capacity * Long.BYTES;
+            this.priceOffset = 2 * capacity * Long.BYTES;
+            this.categoryOffset = 3 * capacity * Long.BYTES;
+            this.quantityOffset = categoryOffset + capacity * Integer.BYTES;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        long transactionId(int row) {
+            return data.getLong(row * Long.BYTES);
+        }
+
+        long productId(int row) {
+            return data.getLong(productIdOffset + row * Long.BYTES);
+        }
+
+        long priceUnits(int row) {
+            return data.getLong(priceOffset + row * Long.BYTES);
+        }
+
+        BigDecimal decimalPrice(int row) {
+            return decimalPrices.get(row);
+        }
+
+        int categoryId(int row) {
+            return data.getInt(categoryOffset + row * Integer.BYTES);
+        }
+
+        int quantity(int row) {
+            return data.getInt(quantityOffset + row * Integer.BYTES);
+        }
+
+        private boolean isFull() {
+            return size == capacity;
+        }
+
+        private void add(long transactionId, long productId, int categoryId,
+                         long priceUnits, BigDecimal decimalPrice, int quantity) {
+            int row = size++;
+            data.putLong(row * Long.BYTES, transactionId);
+            data.putLong(productIdOffset + row * Long.BYTES, productId);
+            data.putLong(priceOffset + row * Long.BYTES, priceUnits);
+            data.putInt(categoryOffset + row * Integer.BYTES, categoryId);
+            data.putInt(quantityOffset + row * Integer.BYTES, quantity);
+            if (priceUnits == FixedPointRevenue.NOT_REPRESENTABLE) {
+                decimalPrices.put(row, decimalPrice);
+            }
+        }
+
+        private Chunk trimmed() {
+            if (size == capacity) {
+                return this;
+            }
+            Chunk copy = new Chunk(Math.max(size, 1));
+            for (int row = 0; row < size; row++) {
+                copy.add(transactionId(row), productId(row), categoryId(row),
+                        priceUnits(row), decimalPrice(row), quantity(row));
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Fills chunks row by row. Not thread-safe: parallel loaders use one appender each and
+     * concatenate the {@link #finish() finished} chunks.
+     */
+    public static final class Appender {
+
+        private final List<Chunk> chunks = new ArrayList<>();
+        private Chunk current;
+
+        /**
+         * @param priceUnits   fixed-point price, or {@link FixedPointRevenue#NOT_REPRESENTABLE}
+         * @param decimalPrice the exact price, only used when {@code priceUnits} is not representable
+         */
+        public void add(long transactionId, long productId, int categoryId,
+                        long priceUnits, BigDecimal decimalPrice, int quantity) {
+            if (priceUnits == FixedPointRevenue.NOT_REPRESENTABLE) {
+                Objects.requireNonNull(decimalPrice, "decimalPrice must not be null");
+            }
+            if (current == null || current.isFull()) {
+                current = new Chunk(CHUNK_ROWS);
+                chunks.add(current);
+            }
+            current.add(transactionId, productId, categoryId, priceUnits, decimalPrice, quantity);
+        }
+
+        /**
+         * Returns the filled chunks; a partially filled last chunk is copied into an exactly sized one.
+         */
+        public List<Chunk> finish() {
+            if (!chunks.isEmpty()) {
+                int last = chunks.size() - 1;
+                chunks.set(last, chunks.get(last).trimmed());
+            }
+            current = null;
+            return chunks;
+        }
+    }
+}
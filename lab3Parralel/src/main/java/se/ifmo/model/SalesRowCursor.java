@@ -0,0 +1,64 @@
+package se.ifmo.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Flyweight view of one row of a {@link SalesColumnStore}: {@link #moveTo} repositions it
+ * without allocating. Mappers that receive a cursor must not keep a reference to it.
+ */
+public final class SalesRowCursor {
+
+    private final CategoryDictionary dictionary;
+
+    private SalesColumnStore.Chunk chunk;
+    private int row;
+
+    SalesRowCursor(CategoryDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public SalesRowCursor moveTo(SalesColumnStore.Chunk chunk, int row) {
+        if (row < 0 || row >= chunk.size()) {
+            throw new IndexOutOfBoundsException("row " + row + " out of range [0, " + chunk.size() + ")");
+        }
+        this.chunk = chunk;
+        this.row = row;
+        return this;
+    }
+
+    public long transactionId() {
+        return chunk.transactionId(row);
+    }
+
+    public long productId() {
+        return chunk.productId(row);
+    }
+
+    public int categoryId() {
+        return chunk.categoryId(row);
+    }
+
+    public String category() {
+        return dictionary.nameOf(chunk.categoryId(row));
+    }
+
+    /**
+     * Price in {@link FixedPointRevenue} units, or {@link FixedPointRevenue#NOT_REPRESENTABLE}.
+     */
+    public long priceUnits() {
+        return chunk.priceUnits(row);
+    }
+
+    public BigDecimal price() {
+        long units = chunk.priceUnits(row);
+        return units != FixedPointRevenue.NOT_REPRESENTABLE ? FixedPointRevenue.toDecimal(units) : chunk.decimalPrice(row);
+    }
+
+    public int quantity() {
+        return chunk.quantity(row);
+    }
+
+    public SalesRecord toRecord() {
+        return new SalesRecord(transactionId(), productId(), category(), price(), quantity());
+    }
+}
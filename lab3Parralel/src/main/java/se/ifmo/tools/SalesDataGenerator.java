@@ -0,0 +1,365 @@
+package se.ifmo.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes synthetic {@code 0.csv..N-1.csv} sales files in the
+ * {@code transaction_id,product_id,category,price,quantity} format.
+ * Category keys follow a Zipf distribution (exponent 0 gives uniform keys) and a configurable
+ * share of rows is deliberately malformed. Every file is generated by its own task and written
+ * through a direct buffer and a {@link FileChannel}.
+ *
+ * <pre>
+ * --output=build/generated-data --files=8 --file-size=64MB --categories=20
+ * --zipf=1.1 --malformed-rate=0.001 --threads=4 --seed=42
+ * </pre>
+ */
+public final class SalesDataGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SalesDataGenerator.class);
+
+    private static final byte[] HEADER =
+            "transaction_id,product_id,category,price,quantity\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String[] KNOWN_CATEGORIES = {
+            "video games", "clothing", "automotive", "music instruments", "stationery",
+            "groceries", "footwear", "beauty products", "jewelry", "baby products",
+            "gardening tools", "electronics", "sports equipment", "furniture", "pet supplies",
+            "health & wellness", "home appliances", "books", "toys", "office equipment"
+    };
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_ROW_SIZE = 256;
+
+    private static final long TRANSACTIONS_PER_FILE = 1_000_000_000_000L;
+    private static final int PRODUCTS_COUNT = 20_000;
+    private static final int MAX_PRICE_UNSCALED = 10_000_000;
+    private static final int PRICE_SCALE = 3;
+    private static final int MAX_QUANTITY = 9;
+
+    private SalesDataGenerator() {
+    }
+
+    public static void main(String[] args) {
+        try {
+            Options options = Options.parse(args);
+            long start = System.currentTimeMillis();
+            List<Path> files = generate(options);
+            LOG.info("Generated {} files in '{}' in {} ms",
+                    files.size(), options.outputDirectory().toAbsolutePath(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            LOG.error("Failed to generate sales data", e);
+            System.exit(1);
+        }
+    }
+
+    public static List<Path> generate(Options options) throws IOException, InterruptedException {
+        Files.createDirectories(options.outputDirectory());
+
+        byte[][] categories = categoryNames(options.categories());
+        double[] cumulative = zipfCumulative(options.categories(), options.zipfExponent());
+
+        LOG.info("Generating {} files of {} bytes into '{}' with {} categories, zipf={}, malformedRate={}",
+                options.files(), options.fileSize(), options.outputDirectory(),
+                options.categories(), options.zipfExponent(), options.malformedRate());
+
+        List<Future<Path>> results = new ArrayList<>(options.files());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.threads(), options.files()));
+        try {
+            for (int fileIndex = 0; fileIndex < options.files(); fileIndex++) {
+                int current = fileIndex;
+                results.add(executor.submit(() -> writeFile(options, current, categories, cumulative)));
+            }
+
+            List<Path> files = new ArrayList<>(options.files());
+            for (Future<Path> result : results) {
+                files.add(result.get());
+            }
+            return files;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to generate sales data", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Path writeFile(Options options,
+                                  int fileIndex,
+                                  byte[][] categories,
+                                  double[] cumulative) throws IOException {
+
+        Path file = options.outputDirectory().resolve(fileIndex + ".csv");
+        SplittableRandom random = new SplittableRandom(options.seed() + fileIndex);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            buffer.put(HEADER);
+            long transactionId = fileIndex * TRANSACTIONS_PER_FILE;
+
+            while (written + buffer.position() < options.fileSize()) {
+                if (buffer.remaining() < MAX_ROW_SIZE) {
+                    written += flush(channel, buffer);
+                }
+                int category = sampleCategory(random, cumulative);
+                if (random.nextDouble() < options.malformedRate()) {
+                    putMalformedRow(buffer, random, transactionId++, categories[category]);
+                } else {
+                    putRow(buffer, random, transactionId++, categories[category]);
+                }
+            }
+            written += flush(channel, buffer);
+        }
+
+        LOG.info("Wrote {} ({} bytes)", file, written);
+        return file;
+    }
+
+    private static long flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        long bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return bytes;
+    }
+
+    private static void putRow(ByteBuffer buffer, SplittableRandom random, long transactionId, byte[] category) {
+        putLong(buffer, transactionId);
+        buffer.put((byte) ',');
+        putLong(buffer, random.nextInt(1, PRODUCTS_COUNT));
+        buffer.put((byte) ',');
+        buffer.put(category);
+        buffer.put((byte) ',');
+        putPrice(buffer, random.nextInt(1, MAX_PRICE_UNSCALED));
+        buffer.put((byte) ',');
+        putLong(buffer, random.nextInt(1, MAX_QUANTITY + 1));
+        buffer.put((byte) '\n');
+    }
+
+    private static void putMalformedRow(ByteBuffer buffer, SplittableRandom random, long transactionId, byte[] category) {
+        putLong(buffer, transactionId);
+        buffer.put((byte) ',');
+        putLong(buffer, random.nextInt(1, PRODUCTS_COUNT));
+        buffer.put((byte) ',');
+        switch (random.nextInt(4)) {
+            case 0:
+                // missing quantity column
+                buffer.put(category);
+                buffer.put((byte) ',');
+                putPrice(buffer, random.nextInt(1, MAX_PRICE_UNSCALED));
+                break;
+            case 1:
+                // non-numeric price
+                buffer.put(category);
+                buffer.put((byte) ',');
+                buffer.put("n/a".getBytes(StandardCharsets.US_ASCII));
+                buffer.put((byte) ',');
+                putLong(buffer, random.nextInt(1, MAX_QUANTITY + 1));
+                break;
+            case 2:
+                // empty category
+                buffer.put((byte) ',');
+                putPrice(buffer, random.nextInt(1, MAX_PRICE_UNSCALED));
+                buffer.put((byte) ',');
+                putLong(buffer, random.nextInt(1, MAX_QUANTITY + 1));
+                break;
+            default:
+                // negative quantity
+                buffer.put(category);
+                buffer.put((byte) ',');
+                putPrice(buffer, random.nextInt(1, MAX_PRICE_UNSCALED));
+                buffer.put((byte) ',');
+                putLong(buffer, -random.nextInt(1, MAX_QUANTITY + 1));
+                break;
+        }
+        buffer.put((byte) '\n');
+    }
+
+    private static void putPrice(ByteBuffer buffer, int unscaled) {
+        int divisor = 1;
+        for (int i = 0; i < PRICE_SCALE; i++) {
+            divisor *= 10;
+        }
+        putLong(buffer, unscaled / divisor);
+        buffer.put((byte) '.');
+
+        int fraction = unscaled % divisor;
+        for (int digit = divisor / 10; digit > 0; digit /= 10) {
+            buffer.put((byte) ('0' + fraction / digit % 10));
+        }
+    }
+
+    private static void putLong(ByteBuffer buffer, long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static int sampleCategory(SplittableRandom random, double[] cumulative) {
+        double u = random.nextDouble() * cumulative[cumulative.length - 1];
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static double[] zipfCumulative(int categories, double exponent) {
+        double[] cumulative = new double[categories];
+        double sum = 0;
+        for (int rank = 1; rank <= categories; rank++) {
+            sum += 1.0 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        return cumulative;
+    }
+
+    private static byte[][] categoryNames(int categories) {
+        byte[][] names = new byte[categories][];
+        for (int i = 0; i < categories; i++) {
+            String name = categories <= KNOWN_CATEGORIES.length ? KNOWN_CATEGORIES[i] : "category " + i;
+            names[i] = name.getBytes(StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    public record Options(Path outputDirectory,
+                          int files,
+                          long fileSize,
+                          int categories,
+                          double zipfExponent,
+                          double malformedRate,
+                          int threads,
+                          long seed) {
+
+        public Options {
+            if (outputDirectory == null) {
+                throw new IllegalArgumentException("outputDirectory must not be null");
+            }
+            if (files <= 0) {
+                throw new IllegalArgumentException("files must be > 0");
+            }
+            if (fileSize <= 0) {
+                throw new IllegalArgumentException("fileSize must be > 0");
+            }
+            if (categories <= 0) {
+                throw new IllegalArgumentException("categories must be > 0");
+            }
+            if (zipfExponent < 0) {
+                throw new IllegalArgumentException("zipfExponent must be non-negative");
+            }
+            if (malformedRate < 0 || malformedRate > 1) {
+                throw new IllegalArgumentException("malformedRate must be in [0, 1]");
+            }
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads must be > 0");
+            }
+        }
+
+        public static Options parse(String[] args) {
+            Path outputDirectory = Paths.get("build/generated-data");
+            int files = 4;
+            long fileSize = 16L << 20;
+            int categories = KNOWN_CATEGORIES.length;
+            double zipfExponent = 0.0;
+            double malformedRate = 0.0;
+            int threads = Runtime.getRuntime().availableProcessors();
+            long seed = 42L;
+
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) {
+                    throw new IllegalArgumentException("Expected --name=value argument, got: " + arg);
+                }
+                String name = arg.substring(2, eq);
+                String value = arg.substring(eq + 1);
+                switch (name) {
+                    case "output":
+                        outputDirectory = Paths.get(value);
+                        break;
+                    case "files":
+                        files = Integer.parseInt(value);
+                        break;
+                    case "file-size":
+                        fileSize = parseSize(value);
+                        break;
+                    case "categories":
+                        categories = Integer.parseInt(value);
+                        break;
+                    case "zipf":
+                        zipfExponent = Double.parseDouble(value);
+                        break;
+                    case "malformed-rate":
+                        malformedRate = Double.parseDouble(value);
+                        break;
+                    case "threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            }
+
+            return new Options(outputDirectory, files, fileSize, categories,
+                    zipfExponent, malformedRate, threads, seed);
+        }
+
+        private static long parseSize(String value) {
+            String normalized = value.trim().toUpperCase(Locale.ROOT);
+            long multiplier = 1;
+            if (normalized.endsWith("KB")) {
+                multiplier = 1L << 10;
+            } else if (normalized.endsWith("MB")) {
+                multiplier = 1L << 20;
+            } else if (normalized.endsWith("GB")) {
+                multiplier = 1L << 30;
+            }
+            if (multiplier > 1) {
+                normalized = normalized.substring(0, normalized.length() - 2);
+            }
+            return Long.parseLong(normalized.trim()) * multiplier;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package se.ifmo.hadoop;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.ifmo.model.CategoryDictionary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CategoryDictionaryFileTest {
+
+    private static final byte[] CAFE_CP1252 = "Café".getBytes(Charset.forName("windows-1252"));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsCategoryBytesThatAreNotUtf8() throws IOException {
+        CategoryDictionary dictionary = read(lines(utf8("Books"), CAFE_CP1252, utf8("Toys")));
+
+        assertEquals(3, dictionary.size());
+        assertArrayEquals(CAFE_CP1252, dictionary.bytesOf(1));
+        // the mapper resolves the raw row bytes to the id the reducer writes back
+        assertEquals(1, dictionary.idOf(ByteBuffer.wrap(CAFE_CP1252), 0, CAFE_CP1252.length));
+        assertEquals(3, dictionary.size());
+    }
+
+    @Test
+    void idsFollowLineOrderAndSkipEmptyLines() throws IOException {
+        CategoryDictionary dictionary = read(lines(utf8("Books"), new byte[0], utf8("Garden"), utf8("Toys")));
+
+        assertEquals(3, dictionary.size());
+        assertEquals("Books", dictionary.nameOf(0));
+        assertEquals("Garden", dictionary.nameOf(1));
+        assertEquals("Toys", dictionary.nameOf(2));
+    }
+
+    @Test
+    void failsWithoutAConfiguredDictionary() {
+        assertThrows(IOException.class, () -> CategoryDictionaryFile.read(new Configuration()));
+    }
+
+    private CategoryDictionary read(byte[] content) throws IOException {
+        Path file = directory.resolve("part-r-00000");
+        Files.write(file, content);
+
+        Configuration conf = new Configuration();
+        conf.set(CategoryDictionaryFile.CATEGORY_DICTIONARY, file.toUri().toString());
+        return CategoryDictionaryFile.read(conf);
+    }
+
+    private static byte[] lines(byte[]... names) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] name : names) {
+            out.writeBytes(name);
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] utf8(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+package se.ifmo.hadoop;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CategoryIdWritableTest {
+
+    private static final int[] IDS = {0, 1, 2, 111, 112, 127, 128, 255, 256, 65_535, 65_536,
+            Integer.MAX_VALUE, -1, -112, -113, -129, Integer.MIN_VALUE};
+
+    @Test
+    void roundTripsIds() throws IOException {
+        for (int id : IDS) {
+            CategoryIdWritable copy = new CategoryIdWritable();
+            copy.readFields(new DataInputStream(new ByteArrayInputStream(serialize(id))));
+            assertEquals(id, copy.get());
+        }
+    }
+
+    @Test
+    void rawComparatorAgreesWithCompareTo() throws IOException {
+        CategoryIdWritable.Comparator comparator = new CategoryIdWritable.Comparator();
+        for (int left : IDS) {
+            byte[] leftBytes = serialize(left);
+            for (int right : IDS) {
+                byte[] rightBytes = serialize(right);
+                int expected = Integer.signum(new CategoryIdWritable(left).compareTo(new CategoryIdWritable(right)));
+
+                assertEquals(expected, Integer.signum(comparator.compare(
+                        leftBytes, 0, leftBytes.length, rightBytes, 0, rightBytes.length)), left + " vs " + right);
+            }
+        }
+    }
+
+    private static byte[] serialize(int id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        new CategoryIdWritable(id).write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,130 @@
+package se.ifmo.hadoop;
+
+import org.junit.jupiter.api.Test;
+import se.ifmo.model.FixedPointRevenue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalesWritableTest {
+
+    // records are serialized behind a few bytes of padding so comparators must honour the offsets
+    private static final int PADDING = 3;
+
+    @Test
+    void roundTripsFixedPointAndDecimalRevenue() throws IOException {
+        for (SalesWritable original : samples()) {
+            SalesWritable copy = new SalesWritable();
+            byte[] bytes = serialize(original);
+            copy.readFields(new DataInputStream(new ByteArrayInputStream(bytes, PADDING, bytes.length - PADDING)));
+
+            assertEquals(original, copy);
+            assertEquals(0, original.getTotalRevenue().compareTo(copy.getTotalRevenue()));
+            assertEquals(original.getTotalQuantity(), copy.getTotalQuantity());
+            assertEquals(original.isFixedPoint(), copy.isFixedPoint());
+        }
+    }
+
+    @Test
+    void rawComparatorAgreesWithCompareTo() throws IOException {
+        SalesWritable.Comparator comparator = new SalesWritable.Comparator();
+        List<SalesWritable> samples = samples();
+        for (SalesWritable left : samples) {
+            byte[] leftBytes = serialize(left);
+            for (SalesWritable right : samples) {
+                byte[] rightBytes = serialize(right);
+                int expected = Integer.signum(left.compareTo(right));
+
+                assertEquals(expected, Integer.signum(compareRaw(comparator, leftBytes, rightBytes)),
+                        left + " vs " + right);
+                assertEquals(expected, Integer.signum(comparator.compare(left, right)), left + " vs " + right);
+            }
+        }
+    }
+
+    @Test
+    void descendingComparatorReversesBothPaths() throws IOException {
+        SalesWritable.DescendingComparator comparator = new SalesWritable.DescendingComparator();
+        List<SalesWritable> samples = samples();
+        for (SalesWritable left : samples) {
+            byte[] leftBytes = serialize(left);
+            for (SalesWritable right : samples) {
+                byte[] rightBytes = serialize(right);
+                int expected = Integer.signum(right.compareTo(left));
+
+                assertEquals(expected, Integer.signum(compareRaw(comparator, leftBytes, rightBytes)),
+                        left + " vs " + right);
+                assertEquals(expected, Integer.signum(comparator.compare((Object) left, (Object) right)),
+                        left + " vs " + right);
+            }
+        }
+    }
+
+    @Test
+    void ordersByQuantityWhenRevenueIsEqual() {
+        assertTrue(new SalesWritable(100, 1).compareTo(new SalesWritable(100, 2)) < 0);
+        assertTrue(new SalesWritable(-100, 5).compareTo(new SalesWritable(100, 1)) < 0);
+    }
+
+    @Test
+    void addInPlaceFallsBackToDecimalOnOverflow() {
+        SalesWritable total = new SalesWritable(Long.MAX_VALUE - 1, 1);
+        total.addInPlace(new SalesWritable(Long.MAX_VALUE - 1, 1));
+
+        assertFalse(total.isFixedPoint());
+        assertEquals(FixedPointRevenue.toDecimal(Long.MAX_VALUE - 1).multiply(BigDecimal.valueOf(2)),
+                total.getTotalRevenue());
+        assertEquals(2, total.getTotalQuantity());
+
+        total.addInPlace(new SalesWritable(-(Long.MAX_VALUE - 1), 0));
+        total.addInPlace(new SalesWritable(-(Long.MAX_VALUE - 1), 0));
+        assertTrue(total.isFixedPoint());
+        assertEquals(0, total.getRevenueUnits());
+    }
+
+    private static List<SalesWritable> samples() {
+        List<SalesWritable> samples = new ArrayList<>();
+        long[] units = {0, 1, -1, 63, -64, 127, 128, -112, -113, 1_000_000, -1_000_000,
+                Integer.MAX_VALUE + 1L, Long.MAX_VALUE, Long.MIN_VALUE + 1};
+        for (long unit : units) {
+            samples.add(new SalesWritable(unit, 0));
+            samples.add(new SalesWritable(unit, 7));
+            samples.add(new SalesWritable(unit, -3));
+        }
+
+        BigDecimal huge = new BigDecimal("123456789012345678901234567890.12345");
+        for (BigDecimal decimal : new BigDecimal[]{huge, huge.negate(), huge.add(BigDecimal.ONE), new BigDecimal("1e-9")}) {
+            SalesWritable sample = new SalesWritable();
+            sample.set(decimal, 2);
+            assertFalse(sample.isFixedPoint(), decimal.toPlainString());
+            samples.add(sample);
+        }
+        SalesWritable sameAsHuge = new SalesWritable();
+        sameAsHuge.set(huge.setScale(10), 2);
+        samples.add(sameAsHuge);
+        return samples;
+    }
+
+    private static byte[] serialize(SalesWritable value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[PADDING]);
+        value.write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int compareRaw(SalesWritable.Comparator comparator, byte[] left, byte[] right) {
+        return comparator.compare(left, PADDING, left.length - PADDING, right, PADDING, right.length - PADDING);
+    }
+}
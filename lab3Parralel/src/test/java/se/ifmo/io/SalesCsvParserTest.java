@@ -0,0 +1,160 @@
+package se.ifmo.io;
+
+import org.junit.jupiter.api.Test;
+import se.ifmo.model.SalesRecord;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalesCsvParserTest {
+
+    private final SalesCsvParser parser = new SalesCsvParser();
+
+    @Test
+    void parsesAWellFormedRow() {
+        assertTrue(parse("17,42,Electronics,199.99,3"));
+
+        assertEquals(17, parser.transactionId());
+        assertEquals(42, parser.productId());
+        assertEquals("Electronics", parser.category());
+        assertTrue(parser.hasFixedPointPrice());
+        assertEquals(19_999, parser.priceUnscaled());
+        assertEquals(2, parser.priceScale());
+        assertEquals(new BigDecimal("199.99"), parser.price());
+        assertEquals(3, parser.quantity());
+    }
+
+    @Test
+    void trimsBlanksAndLineTerminators() {
+        assertTrue(parse("  1 ,\t2, Home Goods ,  5 , 7 \r\n"));
+
+        assertEquals(1, parser.transactionId());
+        assertEquals(2, parser.productId());
+        assertEquals("Home Goods", parser.category());
+        assertEquals(new BigDecimal("5"), parser.price());
+        assertEquals(0, parser.priceScale());
+        assertEquals(7, parser.quantity());
+    }
+
+    @Test
+    void skipsHeaderAndBlankLines() {
+        assertFalse(parse("transaction_id,product_id,category,price,quantity"));
+        assertFalse(parse("Transaction_ID,Product_ID,Category,Price,Quantity\r\n"));
+        assertFalse(parse(""));
+        assertFalse(parse(" \t\r\n"));
+    }
+
+    @Test
+    void parsesTheRowWithinTheGivenRange() {
+        byte[] bytes = "1,1,Books,1.5,1\n2,3,Toys,-0.25,4\n".getBytes(StandardCharsets.UTF_8);
+        int secondLine = 16;
+
+        assertTrue(parser.parse(bytes, secondLine, bytes.length));
+        assertEquals(2, parser.transactionId());
+        assertEquals("Toys", parser.category());
+        assertEquals(new BigDecimal("-0.25"), parser.price());
+        assertEquals(secondLine + 4, parser.categoryOffset());
+        assertEquals(4, parser.categoryLength());
+    }
+
+    @Test
+    void parsesDirectBuffers() {
+        byte[] bytes = "9,8,Garden,10.10,2".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+
+        assertTrue(parser.parse(buffer, 0, bytes.length));
+        assertEquals("Garden", parser.category());
+        assertEquals(new BigDecimal("10.10"), parser.price());
+    }
+
+    @Test
+    void decodesUtf8CategoriesAndCachesThem() {
+        assertTrue(parse("1,1,Книги,1,1"));
+        String first = parser.category();
+        assertEquals("Книги", first);
+
+        assertTrue(parse("2,2,Книги,2,2"));
+        assertSame(first, parser.category());
+
+        assertTrue(parse("3,3,Игрушки,3,3"));
+        assertEquals("Игрушки", parser.category());
+    }
+
+    @Test
+    void fallsBackToDecimalForLongPrices() {
+        assertTrue(parse("1,1,Books,123456789012345678.9,1"));
+
+        assertFalse(parser.hasFixedPointPrice());
+        assertEquals(new BigDecimal("123456789012345678.9"), parser.price());
+
+        assertTrue(parse("1,1,Books,12345678901234567.8,1"));
+        assertTrue(parser.hasFixedPointPrice());
+        assertEquals(123_456_789_012_345_678L, parser.priceUnscaled());
+        assertEquals(1, parser.priceScale());
+    }
+
+    @Test
+    void acceptsExponentPricesThroughTheFallback() {
+        assertTrue(parse("1,1,Books,1E+2,1"));
+
+        assertFalse(parser.hasFixedPointPrice());
+        assertEquals(0, new BigDecimal("100").compareTo(parser.price()));
+    }
+
+    @Test
+    void ignoresColumnsAfterQuantity() {
+        assertTrue(parse("1,1,Books,2.00,5,extra"));
+        assertEquals(5, parser.quantity());
+    }
+
+    @Test
+    void convertsToRecord() {
+        assertTrue(parse("5,6,Sports,12.50,2"));
+
+        SalesRecord record = parser.toRecord();
+        assertEquals("Sports", record.category());
+        assertEquals(new BigDecimal("12.50"), record.price());
+        assertEquals(2, record.quantity());
+    }
+
+    @Test
+    void rejectsMalformedRows() {
+        assertMalformed("1,2,Books,3");
+        assertMalformed("1,2, ,3,4");
+        assertMalformed("x,2,Books,3,4");
+        assertMalformed("1,2,Books,abc,4");
+        assertMalformed("1,2,Books,1.2.3,4");
+        assertMalformed("1,2,Books,,4");
+        assertMalformed("1,2,Books,-,4");
+        assertMalformed("1,2,Books,3,-1");
+        assertMalformed("1,2,Books,3,2147483648");
+        assertMalformed("1,2,Books,3,");
+        assertMalformed("9223372036854775808,2,Books,3,4");
+    }
+
+    @Test
+    void acceptsLongBoundsInIdColumns() {
+        assertTrue(parse("9223372036854775807,-9223372036854775807,Books,1,2147483647"));
+
+        assertEquals(Long.MAX_VALUE, parser.transactionId());
+        assertEquals(-Long.MAX_VALUE, parser.productId());
+        assertEquals(Integer.MAX_VALUE, parser.quantity());
+    }
+
+    private boolean parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(bytes, 0, bytes.length);
+    }
+
+    private void assertMalformed(String line) {
+        assertThrows(IllegalArgumentException.class, () -> parse(line), line);
+    }
+}
@@ -0,0 +1,135 @@
+package se.ifmo.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.ifmo.model.SalesRecord;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalesCsvReaderTest {
+
+    private static final String HEADER = "transaction_id,product_id,category,price,quantity";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void movesABoundaryInsideARowToTheNextLineStart() throws IOException {
+        Path file = write("rows.csv", rows(40), "\n", true);
+
+        for (long target : new long[] {40, 57, 100, 333}) {
+            List<CsvSplit> splits = assertSplitsCoverRows(file, target);
+            assertTrue(splits.size() > 1, "target " + target);
+        }
+    }
+
+    @Test
+    void keepsABoundaryThatFallsRightAfterALineTerminator() throws IOException {
+        Path file = write("rows.csv", rows(10), "\n", true);
+        long firstLine = HEADER.length() + 1;
+
+        // the boundary is the first byte of the next line, or the terminator itself
+        assertEquals(firstLine, assertSplitsCoverRows(file, firstLine).get(0).length());
+        assertEquals(firstLine, assertSplitsCoverRows(file, firstLine - 1).get(0).length());
+    }
+
+    @Test
+    void splitsCrlfFilesAfterTheLineFeed() throws IOException {
+        Path file = write("crlf.csv", rows(40), "\r\n", true);
+        byte[] bytes = Files.readAllBytes(file);
+
+        for (long target : new long[] {1, 25, 26, 27, 64, 200}) {
+            for (CsvSplit split : assertSplitsCoverRows(file, target)) {
+                if (split.start() > 0) {
+                    assertEquals('\r', bytes[(int) split.start() - 2], "target " + target);
+                }
+            }
+        }
+    }
+
+    @Test
+    void findsTheLineEndOfARowLongerThanTheProbeWindow() throws IOException {
+        List<String> lines = rows(5);
+        lines.add(3, "99,99," + "x".repeat(50_000) + ",1.50,2");
+        Path file = write("long.csv", lines, "\n", true);
+
+        for (long target : new long[] {1, 150, 4_096, 20_000, 50_000}) {
+            assertSplitsCoverRows(file, target);
+        }
+    }
+
+    @Test
+    void givesEveryRowItsOwnSplitWhenTheSplitSizeIsSmallerThanARow() throws IOException {
+        List<String> lines = rows(12);
+        Path file = write("rows.csv", lines, "\n", true);
+
+        List<CsvSplit> splits = assertSplitsCoverRows(file, 1);
+
+        assertEquals(lines.size(), splits.size());
+    }
+
+    @Test
+    void keepsALastRowWithoutTerminator() throws IOException {
+        Path file = write("open.csv", rows(20), "\n", false);
+
+        for (long target : new long[] {1, 30, 1_000}) {
+            assertSplitsCoverRows(file, target);
+        }
+    }
+
+    /**
+     * Checks that the splits tile the file, start on line starts and together yield exactly the
+     * rows of a plain line-by-line read.
+     */
+    private static List<CsvSplit> assertSplitsCoverRows(Path file, long targetSplitSize) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        List<CsvSplit> splits = SalesCsvReader.createSplits(file, targetSplitSize);
+
+        long expectedStart = 0;
+        List<SalesRecord> rows = new ArrayList<>();
+        for (CsvSplit split : splits) {
+            assertEquals(expectedStart, split.start(), "target " + targetSplitSize);
+            if (split.start() > 0) {
+                assertEquals('\n', bytes[(int) split.start() - 1], "target " + targetSplitSize);
+            }
+            expectedStart = split.end();
+            SalesCsvReader.readSplit(split, row -> rows.add(row.toRecord()));
+        }
+        assertEquals(bytes.length, expectedStart, "target " + targetSplitSize);
+        assertEquals(plainRows(file), rows, "target " + targetSplitSize);
+        return splits;
+    }
+
+    private static List<SalesRecord> plainRows(Path file) throws IOException {
+        List<SalesRecord> rows = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            SalesRecord record = SalesCsvReader.parseLine(line);
+            if (record != null) {
+                rows.add(record);
+            }
+        }
+        return rows;
+    }
+
+    private static List<String> rows(int count) {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for (int i = 0; i < count; i++) {
+            lines.add(i + "," + (i % 7) + ",Category-" + (i % 5) + "," + (i % 13) + ".25," + (i % 4 + 1));
+        }
+        return lines;
+    }
+
+    private Path write(String name, List<String> lines, String terminator, boolean terminated) throws IOException {
+        String content = String.join(terminator, lines) + (terminated ? terminator : "");
+        return Files.writeString(directory.resolve(name), content, StandardCharsets.UTF_8);
+    }
+}
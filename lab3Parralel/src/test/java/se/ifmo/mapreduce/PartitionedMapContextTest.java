@@ -0,0 +1,48 @@
+package se.ifmo.mapreduce;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PartitionedMapContextTest {
+
+    @Test
+    void mergesAKeyWrittenByManyTasksInTaskOrder() {
+        PartitionedMapContext<String, Integer> context = new PartitionedMapContext<>(2);
+        List<Integer> expected = new ArrayList<>();
+        for (int task = 0; task < 16; task++) {
+            MapContext<String, Integer> buffer = context.taskContext();
+            for (int i = 0; i < 3; i++) {
+                buffer.write("hot", task * 10 + i);
+                expected.add(task * 10 + i);
+            }
+            buffer.write("task-" + task, task);
+        }
+
+        Map<String, List<Integer>> grouped = context.getGroupedData();
+
+        assertEquals(17, grouped.size());
+        assertEquals(expected, grouped.get("hot"));
+        assertEquals(List.of(3), grouped.get("task-3"));
+    }
+
+    @Test
+    void mergingAgainGivesTheSameGroups() {
+        PartitionedMapContext<String, Integer> context = new PartitionedMapContext<>(1);
+        for (int task = 0; task < 4; task++) {
+            MapContext<String, Integer> buffer = context.taskContext();
+            buffer.write("a", task);
+            buffer.write("b", task);
+        }
+
+        Map<String, List<Integer>> first = context.getPartition(0);
+        Map<String, List<Integer>> second = context.getPartition(0);
+
+        assertEquals(List.of(0, 1, 2, 3), first.get("a"));
+        assertEquals(first, second);
+    }
+}
@@ -0,0 +1,242 @@
+package se.ifmo.mapreduce;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillingMapContextTest {
+
+    private static final int TINY_BUDGET_BYTES = 256;
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void mergesMoreRunsThanTheMergeFactor() throws IOException {
+        Map<String, Long> expected = new TreeMap<>();
+        try (SpillingMapContext<String, Integer> context = newContext(4, new HashPartitioner<>())) {
+            for (int i = 0; i < 20_000; i++) {
+                String key = "key-" + (i % 101);
+                context.write(key, i);
+                expected.merge(key, (long) i, Long::sum);
+            }
+            assertTrue(context.getSpillsCount() > 200, "spills: " + context.getSpillsCount());
+
+            assertEquals(expected, reduceAll(context));
+            assertTrue(context.getSpillsCount() <= 64, "runs after merge passes: " + context.getSpillsCount());
+        }
+    }
+
+    @Test
+    void reducesKeysInOrderWithinAPartition() throws IOException {
+        try (SpillingMapContext<String, Integer> context = newContext(1, new HashPartitioner<>())) {
+            for (int i = 0; i < 1_000; i++) {
+                context.write("key-" + (i * 7919 % 500), i);
+            }
+
+            List<String> keys = new ArrayList<>();
+            context.reducePartition(0, (key, values) -> key, (key, reduced) -> keys.add(reduced));
+
+            List<String> sorted = new ArrayList<>(keys);
+            sorted.sort(Comparator.naturalOrder());
+            assertEquals(sorted, keys);
+            assertEquals(500, keys.size());
+        }
+    }
+
+    @Test
+    void leavesEmptyPartitionsEmpty() throws IOException {
+        try (SpillingMapContext<String, Integer> context = newContext(8, (key, partitions) -> 3)) {
+            for (int i = 0; i < 2_000; i++) {
+                context.write("key-" + (i % 10), 1);
+            }
+
+            for (int partition = 0; partition < 8; partition++) {
+                Map<String, Long> reduced = reducePartition(context, partition);
+                if (partition == 3) {
+                    assertEquals(10, reduced.size());
+                    reduced.values().forEach(count -> assertEquals(200L, (long) count));
+                } else {
+                    assertTrue(reduced.isEmpty(), "partition " + partition + ": " + reduced);
+                }
+            }
+        }
+    }
+
+    @Test
+    void groupsAKeyThatSpansSeveralRuns() throws IOException {
+        try (SpillingMapContext<String, Integer> context = newContext(2, new HashPartitioner<>())) {
+            for (int i = 0; i < 500; i++) {
+                context.write("hot", i);
+                context.write("cold-" + i, i);
+            }
+            assertTrue(context.getSpillsCount() > 1);
+
+            List<Integer> hotValues = context.getGroupedData().get("hot");
+            hotValues.sort(Comparator.naturalOrder());
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                expected.add(i);
+            }
+            assertEquals(expected, hotValues);
+        }
+    }
+
+    @Test
+    void skipsValuesTheReducerDoesNotRead() throws IOException {
+        try (SpillingMapContext<String, Integer> context = newContext(1, new HashPartitioner<>())) {
+            for (int i = 0; i < 300; i++) {
+                context.write("a", i);
+                context.write("b", i);
+                context.write("c", i);
+            }
+
+            Map<String, Integer> firstValues = new HashMap<>();
+            context.reducePartition(0, (key, values) -> values.iterator().next(), firstValues::put);
+
+            assertEquals(List.of("a", "b", "c"), new ArrayList<>(new TreeMap<>(firstValues).keySet()));
+        }
+    }
+
+    @Test
+    void valuesCanBeIteratedOnce() throws IOException {
+        try (SpillingMapContext<String, Integer> context = newContext(1, new HashPartitioner<>())) {
+            context.write("a", 1);
+            context.write("a", 2);
+
+            context.reducePartition(0, (key, values) -> {
+                Iterator<Integer> first = values.iterator();
+                assertTrue(first.hasNext());
+                assertThrows(IllegalStateException.class, values::iterator);
+                return null;
+            }, (key, reduced) -> { });
+        }
+    }
+
+    @Test
+    void taskContextGroupsItsOwnOutput() throws IOException {
+        try (SpillingMapContext<String, Integer> context = newContext(2, new HashPartitioner<>())) {
+            MapContext<String, Integer> task = context.taskContext();
+            for (int i = 0; i < 400; i++) {
+                task.write("key-" + (i % 4), 1);
+            }
+
+            Map<String, List<Integer>> groups = task.getGroupedData();
+            assertEquals(4, groups.size());
+            groups.values().forEach(values -> assertEquals(100, values.size()));
+
+            // the task keeps writing after its output was read
+            task.write("key-0", 1);
+            assertEquals(101, context.getGroupedData().get("key-0").size());
+        }
+    }
+
+    @Test
+    void combinesOutputOfSeveralWorkerThreads() throws Exception {
+        Map<String, Long> expected = new TreeMap<>();
+        for (int i = 0; i < 4 * 5_000; i++) {
+            expected.merge("key-" + (i % 37), (long) (i % 5_000), Long::sum);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (SpillingMapContext<String, Integer> context = newContext(3, new HashPartitioner<>())) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int offset = t * 5_000;
+                tasks.add(executor.submit(() -> {
+                    MapContext<String, Integer> task = context.taskContext();
+                    for (int i = 0; i < 5_000; i++) {
+                        task.write("key-" + ((offset + i) % 37), i);
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(1, TimeUnit.MINUTES);
+            }
+
+            assertEquals(expected, reduceAll(context));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closeDeletesSpillFiles() throws IOException {
+        SpillingMapContext<String, Integer> context = newContext(2, new HashPartitioner<>());
+        for (int i = 0; i < 5_000; i++) {
+            context.write("key-" + (i % 50), i);
+        }
+        reduceAll(context);
+        assertTrue(countFiles() > 0);
+
+        context.close();
+
+        assertEquals(0, countFiles());
+        assertEquals(0, context.getSpillsCount());
+    }
+
+    private SpillingMapContext<String, Integer> newContext(int partitions, Partitioner<String> partitioner) {
+        return new SpillingMapContext<>(partitions, partitioner, spillDirectory, TINY_BUDGET_BYTES,
+                new StringSerializer(), Comparator.naturalOrder(), new IntSerializer());
+    }
+
+    private static Map<String, Long> reduceAll(SpillingMapContext<String, Integer> context) {
+        Map<String, Long> result = new TreeMap<>();
+        for (int partition = 0; partition < context.getPartitionsCount(); partition++) {
+            result.putAll(reducePartition(context, partition));
+        }
+        return result;
+    }
+
+    private static Map<String, Long> reducePartition(SpillingMapContext<String, Integer> context, int partition) {
+        Map<String, Long> result = new TreeMap<>();
+        context.reducePartition(partition, (key, values) -> {
+            long sum = 0;
+            for (Integer value : values) {
+                sum += value;
+            }
+            return sum;
+        }, result::put);
+        return result;
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+
+    private static final class IntSerializer implements Serializer<Integer> {
+
+        @Override
+        public void write(DataOutput out, Integer value) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    }
+}
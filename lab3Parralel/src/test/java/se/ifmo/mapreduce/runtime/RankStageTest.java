@@ -0,0 +1,79 @@
+package se.ifmo.mapreduce.runtime;
+
+import org.junit.jupiter.api.Test;
+import se.ifmo.model.CategoryStats;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RankStageTest {
+
+    private static final int PARALLEL_KEYS = 20_000;
+
+    @Test
+    void sortOrdersByRevenueThenKey() {
+        Map<String, CategoryStats> result = new HashMap<>();
+        result.put("b", CategoryStats.ofUnits(500, 1));
+        result.put("a", CategoryStats.ofUnits(500, 2));
+        result.put("c", CategoryStats.ofUnits(900, 1));
+        result.put("d", CategoryStats.of(new BigDecimal("0.001"), 1));
+
+        List<Map.Entry<String, CategoryStats>> sorted = new RankStage(2).sort(result);
+
+        assertEquals(List.of("c", "a", "b", "d"), sorted.stream().map(Map.Entry::getKey).toList());
+    }
+
+    @Test
+    void topKMatchesSortPrefixWithRevenueTies() {
+        // only 7 distinct revenues, so every cut falls inside a group of ties
+        Map<String, CategoryStats> result = result(200, 7);
+        RankStage stage = new RankStage(4);
+
+        for (int k : new int[] {1, 2, 7, 28, 29, 199}) {
+            assertTopKIsSortPrefix(stage, result, k);
+        }
+    }
+
+    @Test
+    void topKMatchesSortPrefixOnThePartitionedPath() {
+        Map<String, CategoryStats> result = result(PARALLEL_KEYS, 1_000);
+
+        for (int threads : new int[] {1, 3, 8}) {
+            RankStage stage = new RankStage(threads);
+            for (int k : new int[] {1, 10, 1_000, 7_001, PARALLEL_KEYS - 1}) {
+                assertTopKIsSortPrefix(stage, result, k);
+            }
+        }
+    }
+
+    @Test
+    void topKOfAtLeastTheWholeResultIsTheSortedResult() {
+        Map<String, CategoryStats> result = result(50, 5);
+        RankStage stage = new RankStage(2);
+
+        assertEquals(stage.sort(result), stage.topK(result, 50));
+        assertEquals(stage.sort(result), stage.topK(result, 1_000));
+    }
+
+    @Test
+    void rejectsNonPositiveK() {
+        assertThrows(IllegalArgumentException.class, () -> new RankStage(2).topK(Map.of(), 0));
+    }
+
+    private static void assertTopKIsSortPrefix(RankStage stage, Map<String, CategoryStats> result, int k) {
+        assertEquals(stage.sort(result).subList(0, k), stage.topK(result, k), "k=" + k);
+    }
+
+    private static Map<String, CategoryStats> result(int keys, int distinctRevenues) {
+        Map<String, CategoryStats> result = new HashMap<>();
+        for (int i = 0; i < keys; i++) {
+            result.put("category-" + i, CategoryStats.ofUnits((i * 7919L) % distinctRevenues * 100, i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,40 @@
+package se.ifmo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ByteRangesTest {
+
+    private static final ByteBuffer ROW = ByteBuffer.wrap("1,2,Books,9.99,3".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void hashesARangeLikeTheSameBytesCopiedOut() {
+        byte[] books = "Books".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(ByteRanges.hash(books), ByteRanges.hash(ROW, 4, 5));
+    }
+
+    @Test
+    void matchesOnlyTheExactRange() {
+        byte[] books = "Books".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(ByteRanges.matches(books, ROW, 4, 5));
+        assertFalse(ByteRanges.matches(books, ROW, 4, 4));
+        assertFalse(ByteRanges.matches(books, ROW, 5, 5));
+    }
+
+    @Test
+    void dictionaryResolvesRowBytesToTheIdOfTheName() {
+        CategoryDictionary dictionary = new CategoryDictionary();
+        int id = dictionary.idOf("Books");
+
+        assertEquals(id, dictionary.idOf(ROW, 4, 5));
+        assertEquals(1, dictionary.size());
+    }
+}
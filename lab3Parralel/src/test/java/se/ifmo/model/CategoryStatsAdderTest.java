@@ -0,0 +1,134 @@
+package se.ifmo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CategoryStatsAdderTest {
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 20_000;
+
+    @Test
+    void sumsExactlyOnTheBaseCell() {
+        CategoryStatsAdder adder = new CategoryStatsAdder();
+        long units = 0;
+        for (int i = 0; i < ADDS_PER_THREAD; i++) {
+            adder.addUnits(amount(0, i), 1);
+            units += amount(0, i);
+        }
+
+        assertEquals(CategoryStats.ofUnits(units, ADDS_PER_THREAD), adder.sum());
+    }
+
+    @Test
+    void sumsExactlyAcrossThreadsAfterInflation() throws Exception {
+        CategoryStatsAdder adder = new CategoryStatsAdder();
+        adder.addUnits(12_345, 7);
+        inflate(adder);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                adder.addUnits(amount(thread, i), 1);
+            }
+        });
+
+        long units = 12_345;
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                units += amount(thread, i);
+            }
+        }
+        assertEquals(CategoryStats.ofUnits(units, 7 + (long) THREADS * ADDS_PER_THREAD), adder.sum());
+    }
+
+    @Test
+    void sumsExactlyAcrossTheOverflowFallback() throws Exception {
+        // every thread pushes its cell past Long.MAX_VALUE units, so the tail goes to the overflow
+        long large = Long.MAX_VALUE / 64;
+        int addsPerThread = 200;
+
+        for (boolean inflated : new boolean[] {false, true}) {
+            CategoryStatsAdder adder = new CategoryStatsAdder();
+            if (inflated) {
+                inflate(adder);
+            }
+            runConcurrently(thread -> {
+                for (int i = 0; i < addsPerThread; i++) {
+                    adder.addUnits(large + thread, 2);
+                }
+                adder.add(CategoryStats.of(new BigDecimal("1e30"), 1));
+            });
+
+            BigDecimal expected = BigDecimal.ZERO;
+            for (int thread = 0; thread < THREADS; thread++) {
+                expected = expected
+                        .add(FixedPointRevenue.toDecimal(large + thread).multiply(BigDecimal.valueOf(addsPerThread)))
+                        .add(new BigDecimal("1e30"));
+            }
+
+            CategoryStats sum = adder.sum();
+            assertFalse(sum.isFixedPoint());
+            assertEquals(0, expected.compareTo(sum.totalRevenue()), "expected " + expected + ", got " + sum);
+            assertEquals((long) THREADS * (addsPerThread * 2L + 1), sum.totalQuantity());
+        }
+    }
+
+    @Test
+    void ignoresNullAndStartsEmpty() {
+        CategoryStatsAdder adder = new CategoryStatsAdder();
+        adder.add(null);
+
+        CategoryStats sum = adder.sum();
+        assertTrue(sum.isFixedPoint());
+        assertEquals(CategoryStats.empty(), sum);
+    }
+
+    private static long amount(int thread, int i) {
+        return 1_000L * thread + i % 997;
+    }
+
+    /**
+     * Switches the adder to per-thread cells, which real contention does only by chance.
+     */
+    private static void inflate(CategoryStatsAdder adder) throws ReflectiveOperationException {
+        Method inflate = CategoryStatsAdder.class.getDeclaredMethod("inflate");
+        inflate.setAccessible(true);
+        inflate.invoke(adder);
+    }
+
+    private static void runConcurrently(IntConsumer task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>(THREADS);
+            for (int thread = 0; thread < THREADS; thread++) {
+                int current = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.accept(current);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package se.ifmo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static se.ifmo.model.FixedPointRevenue.NOT_REPRESENTABLE;
+
+class FixedPointRevenueTest {
+
+    @Test
+    void addDetectsOverflowAtLongBounds() {
+        assertEquals(Long.MAX_VALUE, FixedPointRevenue.add(Long.MAX_VALUE - 1, 1));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.add(Long.MAX_VALUE, 1));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.add(Long.MAX_VALUE, Long.MAX_VALUE));
+        assertEquals(Long.MIN_VALUE + 1, FixedPointRevenue.add(Long.MIN_VALUE + 2, -1));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.add(Long.MIN_VALUE + 1, -2));
+        assertEquals(0, FixedPointRevenue.add(Long.MAX_VALUE, -Long.MAX_VALUE));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.add(NOT_REPRESENTABLE, 0));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.add(0, NOT_REPRESENTABLE));
+    }
+
+    @Test
+    void multiplyDetectsOverflowAtLongBounds() {
+        assertEquals(Long.MAX_VALUE, FixedPointRevenue.multiply(Long.MAX_VALUE, 1));
+        assertEquals(-Long.MAX_VALUE, FixedPointRevenue.multiply(Long.MAX_VALUE, -1));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.multiply(Long.MAX_VALUE, 2));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.multiply(Long.MAX_VALUE / 2 + 1, 2));
+        assertEquals(Long.MAX_VALUE - 1, FixedPointRevenue.multiply(Long.MAX_VALUE / 2, 2));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.multiply(-(Long.MAX_VALUE / 2) - 2, 2));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.multiply(1L << 32, 1L << 32));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.multiply(NOT_REPRESENTABLE, 1));
+        assertEquals(0, FixedPointRevenue.multiply(0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void convertsUnscaledPairs() {
+        assertEquals(1_234_500, FixedPointRevenue.toUnits(1_2345, 3));
+        assertEquals(12_345, FixedPointRevenue.toUnits(12_345, 5));
+        assertEquals(-100_000, FixedPointRevenue.toUnits(-1, 0));
+        assertEquals(100_000_000, FixedPointRevenue.toUnits(1, -3));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.toUnits(1, -14));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.toUnits(Long.MAX_VALUE, 0));
+    }
+
+    @Test
+    void convertsScaleAboveFiveOnlyWithoutLosingDigits() {
+        assertEquals(123, FixedPointRevenue.toUnits(12_300, 7));
+        assertEquals(0, FixedPointRevenue.toUnits(0, 12));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.toUnits(123_456, 6));
+
+        assertEquals(123, FixedPointRevenue.toUnits(new BigDecimal("0.0012300")));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.toUnits(new BigDecimal("0.000001")));
+    }
+
+    @Test
+    void convertsNegativeScaleDecimals() {
+        assertEquals(100_000_000, FixedPointRevenue.toUnits(new BigDecimal("1E+3")));
+        assertEquals(-500_000_000_000_000L, FixedPointRevenue.toUnits(new BigDecimal("-5E+9")));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.toUnits(new BigDecimal("1E+14")));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.toUnits(new BigDecimal("1E+30")));
+    }
+
+    @Test
+    void convertsDecimalsAtLongBounds() {
+        BigDecimal max = FixedPointRevenue.toDecimal(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, FixedPointRevenue.toUnits(max));
+        assertEquals(-Long.MAX_VALUE, FixedPointRevenue.toUnits(max.negate()));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.toUnits(max.add(FixedPointRevenue.toDecimal(1))));
+        assertEquals(NOT_REPRESENTABLE, FixedPointRevenue.toUnits(new BigDecimal("99999999999999.99999")));
+        assertEquals(999_999_999_999_999_999L, FixedPointRevenue.toUnits(new BigDecimal("9999999999999.99999")));
+    }
+
+    @Test
+    void roundTripsThroughDecimal() {
+        long[] units = {0, 1, -1, 12_345, Long.MAX_VALUE, Long.MIN_VALUE + 1};
+        for (long unit : units) {
+            assertEquals(unit, FixedPointRevenue.toUnits(FixedPointRevenue.toDecimal(unit)));
+        }
+    }
+}